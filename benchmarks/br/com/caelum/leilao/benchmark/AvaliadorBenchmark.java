@@ -0,0 +1,49 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.servico.Avaliacao;
+import br.com.caelum.leilao.servico.Avaliador;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvaliadorBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	private int lances;
+
+	@Param({ "false", "true" })
+	private boolean emColunas;
+
+	private Leilao leilao;
+	private Avaliador avaliador;
+
+	@Setup
+	public void prepara() {
+		leilao = Leiloes.comLances("Playstation", lances, Leiloes.diasAtras(0), true);
+		if (emColunas) leilao.guardaLancesEmColunas(false);
+		avaliador = new Avaliador();
+	}
+
+	@Benchmark
+	public Avaliacao avalia() {
+		return avaliador.avalia(leilao);
+	}
+}
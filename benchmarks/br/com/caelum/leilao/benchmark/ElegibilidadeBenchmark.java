@@ -0,0 +1,99 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.LeilaoDaoFalso;
+import br.com.caelum.leilao.servico.EncerradorDeLeilao;
+
+/*
+ * Custo, por leilo, de decidir se ele comeou h uma semana ou mais, para
+ * leiles de idades diferentes. "encerra"  o EncerradorDeLeilao de hoje;
+ * "diaADia" refaz a conta que ele fazia antes, somando um dia de cada vez a
+ * um Calendar, e fica aqui apenas como referncia.
+ * 
+ * O repositrio devolve sempre os mesmos leiles e no grava nada, ento
+ * encerrar de novo um leilo j encerrado no muda o trabalho medido.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElegibilidadeBenchmark {
+
+	private static final int LEILOES = 1000;
+
+	@Param({ "10", "365", "7300" })
+	private int idadeEmDias;
+
+	private List<Leilao> correntes;
+	private EncerradorDeLeilao encerrador;
+
+	@Setup
+	public void prepara() {
+		correntes = Leiloes.varios(LEILOES, 0, Leiloes.diasAtras(idadeEmDias), false);
+		
+		LeilaoDaoFalso dao = new LeilaoDaoFalso() {
+			public Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia) {
+				return correntes;
+			}
+
+			public void encerraTodos(Collection<Integer> ids) {
+			}
+		};
+		encerrador = new EncerradorDeLeilao(dao, new EnviadorDeEmail() {
+			public void envia(Leilao leilao) {
+			}
+		}).emLotesDe(LEILOES);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LEILOES)
+	public int encerra() {
+		encerrador.encerra();
+		return encerrador.getTotalEncerrados();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LEILOES)
+	public int diaADia() {
+		int elegiveis = 0;
+		Calendar hoje = Calendar.getInstance();
+		for (Leilao leilao : correntes) {
+			Calendar inicio = Calendar.getInstance();
+			inicio.setTimeInMillis(leilao.getInstante().toEpochMilli());
+			if (diasEntre(inicio, hoje) >= 7) elegiveis++;
+		}
+		return elegiveis;
+	}
+
+	private static int diasEntre(Calendar inicio, Calendar fim) {
+		Calendar data = (Calendar) inicio.clone();
+		int diasNoIntervalo = 0;
+		while (data.before(fim)) {
+			data.add(Calendar.DAY_OF_MONTH, 1);
+			diasNoIntervalo++;
+		}
+		return diasNoIntervalo;
+	}
+}
@@ -0,0 +1,76 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.LeilaoDaoFalso;
+import br.com.caelum.leilao.servico.EncerradorDeLeilao;
+
+/*
+ * EncerradorDeLeilao.encerra() sobre o LeilaoDaoFalso. Metade dos leiles
+ * comeou h mais de uma semana e  encerrada; a outra metade  recente.
+ * 
+ * Como o encerra() altera os leiles, cada chamada precisa de um repositrio
+ * novo. Montar um por chamada (Level.Invocation) pesaria mais que a prpria
+ * medio, ento cada iterao mede um lote de LOTE chamadas, com os
+ * repositrios montados antes dela. O resultado  o tempo do lote inteiro.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 40, batchSize = EncerradorBenchmark.LOTE)
+@Measurement(iterations = 20, batchSize = EncerradorBenchmark.LOTE)
+@Fork(1)
+public class EncerradorBenchmark {
+
+	static final int LOTE = 50;
+
+	@Param({ "100", "1000", "10000" })
+	private int leiloes;
+
+	private EncerradorDeLeilao[] encerradores;
+	private int proximo;
+
+	@Setup(Level.Iteration)
+	public void prepara() {
+		encerradores = new EncerradorDeLeilao[LOTE];
+		for (int i = 0; i < LOTE; i++) encerradores[i] = novoEncerrador();
+		proximo = 0;
+	}
+
+	private EncerradorDeLeilao novoEncerrador() {
+		List<Leilao> antigos = Leiloes.varios(leiloes / 2, 3, Leiloes.diasAtras(10), false);
+		List<Leilao> recentes = Leiloes.varios(leiloes - leiloes / 2, 3, Leiloes.diasAtras(1), false);
+		
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		dao.salvaTodos(antigos);
+		dao.salvaTodos(recentes);
+		
+		return new EncerradorDeLeilao(dao, new EnviadorDeEmail() {
+			public void envia(Leilao leilao) {
+			}
+		});
+	}
+
+	@Benchmark
+	public int encerra() {
+		EncerradorDeLeilao encerrador = encerradores[proximo++];
+		encerrador.encerra();
+		return encerrador.getTotalEncerrados();
+	}
+}
@@ -0,0 +1,30 @@
+package br.com.caelum.leilao.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Roda todos os benchmarks deste pacote e grava os resultados em JSON (por
+ * padro em resultados-jmh.json, ou no arquivo passado como argumento).
+ * 
+ * Os benchmarks ficam fora do projeto principal, que no depende do JMH. Para
+ * compil-los, coloque no classpath as pastas src e test, os jars de libs,
+ * jmh-core e jmh-generator-annprocess (o processador de anotaes gera as
+ * classes que o JMH executa) e o driver do H2, usado pelo HidratacaoBenchmark.
+ */
+public class ExecutaBenchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		String arquivo = args.length > 0 ? args[0] : "resultados-jmh.json";
+		
+		Options opcoes = new OptionsBuilder()
+				.include(ExecutaBenchmarks.class.getPackage().getName() + ".*")
+				.resultFormat(ResultFormatType.JSON)
+				.result(arquivo)
+				.build();
+		new Runner(opcoes).run();
+	}
+}
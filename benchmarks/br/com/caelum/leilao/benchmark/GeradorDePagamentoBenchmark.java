@@ -0,0 +1,64 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.caelum.leilao.dominio.Pagamento;
+import br.com.caelum.leilao.infra.dao.LeilaoDaoFalso;
+import br.com.caelum.leilao.infra.dao.RepositorioDePagamentos;
+import br.com.caelum.leilao.servico.Avaliador;
+import br.com.caelum.leilao.servico.GeradorDePagamento;
+
+/*
+ * GeradorDePagamento.gera() sobre leiles encerrados do LeilaoDaoFalso. Os
+ * pagamentos vo para um Blackhole, para que o JMH no descarte o trabalho.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeradorDePagamentoBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	private int leiloes;
+
+	@Param({ "10" })
+	private int lancesPorLeilao;
+
+	private LeilaoDaoFalso dao;
+
+	@Setup
+	public void prepara() {
+		dao = new LeilaoDaoFalso();
+		dao.salvaTodos(Leiloes.varios(leiloes, lancesPorLeilao, Leiloes.diasAtras(10), true));
+	}
+
+	@Benchmark
+	public void gera(final Blackhole buraco) {
+		RepositorioDePagamentos pagamentos = new RepositorioDePagamentos() {
+			public void salva(Pagamento pagamento) {
+				buraco.consume(pagamento);
+			}
+
+			public void salvaTodos(List<Pagamento> todos) {
+				buraco.consume(todos);
+			}
+		};
+		new GeradorDePagamento(dao, pagamentos, new Avaliador()).gera();
+	}
+}
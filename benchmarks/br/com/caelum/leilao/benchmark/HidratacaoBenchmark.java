@@ -0,0 +1,72 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.infra.dao.LeilaoDao;
+import br.com.caelum.leilao.infra.dao.ScriptsDoBanco;
+
+/*
+ * Montagem dos leiles pelo LeilaoDao (consulta com lances e usurios e
+ * hidratao linha a linha) contra um H2 em memria no modo MySQL, com as
+ * tabelas e ndices criados pelos scripts de sql/.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HidratacaoBenchmark {
+
+	@Param({ "100", "1000" })
+	private int leiloes;
+
+	@Param({ "10" })
+	private int lancesPorLeilao;
+
+	private Connection conexao;
+	private LeilaoDao dao;
+
+	@Setup
+	public void prepara() throws SQLException {
+		conexao = DriverManager.getConnection("jdbc:h2:mem:benchmark;MODE=MySQL");
+		ScriptsDoBanco.executa(conexao);
+		Statement usuarios = conexao.createStatement();
+		for (int i = 1; i <= lancesPorLeilao / 5 + 2; i++) {
+			usuarios.execute("INSERT INTO USUARIO (NOME) VALUES ('Usurio " + i + "')");
+		}
+		usuarios.close();
+		
+		dao = new LeilaoDao(conexao);
+		dao.salvaTodos(Leiloes.varios(leiloes, lancesPorLeilao, Leiloes.diasAtras(10), true));
+	}
+
+	@TearDown
+	public void fecha() throws SQLException {
+		conexao.close();
+	}
+
+	@Benchmark
+	public void hidrata(Blackhole buraco) {
+		for (Leilao leilao : dao.percorreEncerrados()) buraco.consume(leilao);
+	}
+}
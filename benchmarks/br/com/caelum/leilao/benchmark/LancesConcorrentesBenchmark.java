@@ -0,0 +1,111 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Vazo de Leilao.propoe() com 1, 2, 4 e 8 threads dando lances ao mesmo
+ * tempo, cada lance num leilo sorteado entre "leiloes". Com um nico leilo,
+ * todas as threads disputam a mesma trava e a vazo no cresce com o nmero
+ * de threads: os lances de um leilo so serializados por projeto, porque as
+ * regras dependem da ordem. Com muitos leiles, cada um tem a sua trava e a
+ * vazo deve crescer com o nmero de ncleos. Publique sempre os dois casos
+ * lado a lado.
+ * 
+ * Os leiles so recriados a cada iterao. Cada um aceita no mximo 5 lances
+ * por usurio; passado esse ponto os lances so recusados, mas ainda passam
+ * pela trava e pelas regras, que  o que se quer medir, e a memria no cresce
+ * durante a iterao. Como com um s leilo quase todos os lances acabam
+ * recusados, compare as vazes entre nmeros de threads para o mesmo
+ * "leiloes", e no um "leiloes" com o outro.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LancesConcorrentesBenchmark {
+
+	private static final int USUARIOS = 100;
+
+	@State(Scope.Benchmark)
+	public static class Disputa {
+
+		@Param({ "1", "1024" })
+		private int leiloes;
+
+		private Leilao[] abertos;
+
+		@Setup(Level.Iteration)
+		public void prepara() {
+			abertos = new Leilao[leiloes];
+			for (int i = 0; i < leiloes; i++) abertos[i] = new Leilao("Leilo " + i);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Licitante {
+
+		private Lance[] lances;
+		private int proximo;
+
+		@Setup
+		public void prepara() {
+			Usuario[] usuarios = Leiloes.usuariosPara(USUARIOS * 5);
+			lances = new Lance[1024];
+			for (int i = 0; i < lances.length; i++) lances[i] = new Lance(usuarios[i % usuarios.length], 100.0 + i);
+		}
+
+		Lance proximo() {
+			return lances[proximo++ & (lances.length - 1)];
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Leilao umaThread(Disputa disputa, Licitante licitante) {
+		return propoe(disputa, licitante);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public Leilao duasThreads(Disputa disputa, Licitante licitante) {
+		return propoe(disputa, licitante);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Leilao quatroThreads(Disputa disputa, Licitante licitante) {
+		return propoe(disputa, licitante);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Leilao oitoThreads(Disputa disputa, Licitante licitante) {
+		return propoe(disputa, licitante);
+	}
+
+	private Leilao propoe(Disputa disputa, Licitante licitante) {
+		Leilao leilao = disputa.abertos[ThreadLocalRandom.current().nextInt(disputa.abertos.length)];
+		leilao.propoe(licitante.proximo());
+		return leilao;
+	}
+}
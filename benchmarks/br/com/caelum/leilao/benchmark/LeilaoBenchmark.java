@@ -0,0 +1,52 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Leilao.propoe() com o leilo crescendo at "lances" lances. O tempo
+ * reportado  o da montagem inteira; dividido por "lances", d o custo mdio
+ * de um lance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeilaoBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	private int lances;
+
+	private Lance[] aPropor;
+
+	@Setup
+	public void prepara() {
+		Usuario[] usuarios = Leiloes.usuariosPara(lances);
+		aPropor = new Lance[lances];
+		for (int i = 0; i < lances; i++) aPropor[i] = new Lance(usuarios[i % usuarios.length], 100.0 + i);
+	}
+
+	@Benchmark
+	public Leilao propoe() {
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		for (Lance lance : aPropor) leilao.propoe(lance);
+		return leilao;
+	}
+}
@@ -0,0 +1,47 @@
+package br.com.caelum.leilao.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Massa de dados dos benchmarks, sempre montada pelo CriadorDeLeilao. Os
+ * lances alternam entre usurios suficientes para que nenhum seja recusado
+ * pelas regras do leilo (nunca dois seguidos, no mximo 5 por usurio).
+ */
+class Leiloes {
+
+	static Usuario[] usuariosPara(int quantidadeDeLances) {
+		Usuario[] usuarios = new Usuario[quantidadeDeLances / 5 + 2];
+		for (int i = 0; i < usuarios.length; i++) usuarios[i] = new Usuario(i + 1, "Usurio " + (i + 1));
+		return usuarios;
+	}
+
+	static Leilao comLances(String descricao, int quantidadeDeLances, Calendar data, boolean encerrado) {
+		Usuario[] usuarios = usuariosPara(quantidadeDeLances);
+		CriadorDeLeilao criador = new CriadorDeLeilao().para(descricao).naData(data);
+		for (int i = 0; i < quantidadeDeLances; i++) {
+			criador.lance(usuarios[i % usuarios.length], 100.0 + (i * 7919 % quantidadeDeLances));
+		}
+		if (encerrado) criador.encerrado();
+		return criador.constroi();
+	}
+
+	static List<Leilao> varios(int quantidade, int lancesPorLeilao, Calendar data, boolean encerrados) {
+		List<Leilao> leiloes = new ArrayList<Leilao>(quantidade);
+		for (int i = 0; i < quantidade; i++) {
+			leiloes.add(comLances("Leilo " + i, lancesPorLeilao, data, encerrados));
+		}
+		return leiloes;
+	}
+
+	static Calendar diasAtras(int dias) {
+		Calendar data = Calendar.getInstance();
+		data.add(Calendar.DAY_OF_MONTH, -dias);
+		return data;
+	}
+}
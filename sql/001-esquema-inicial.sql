@@ -0,0 +1,21 @@
+-- Tabelas que o LeilaoDao j usava. Bancos que j existem comeam no 002.
+CREATE TABLE USUARIO (
+	ID INT AUTO_INCREMENT PRIMARY KEY,
+	NOME VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE LEILAO (
+	ID INT AUTO_INCREMENT PRIMARY KEY,
+	DESCRICAO VARCHAR(255) NOT NULL,
+	DATA DATE NOT NULL,
+	ENCERRADO BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE TABLE LANCES (
+	ID INT AUTO_INCREMENT PRIMARY KEY,
+	LEILAO_ID INT NOT NULL,
+	USUARIO_ID INT NOT NULL,
+	VALOR DOUBLE NOT NULL,
+	FOREIGN KEY (LEILAO_ID) REFERENCES LEILAO (ID),
+	FOREIGN KEY (USUARIO_ID) REFERENCES USUARIO (ID)
+);
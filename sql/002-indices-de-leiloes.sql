@@ -0,0 +1,5 @@
+-- Consultas por leilo: lances na ordem em que foram dados (LeilaoDao.percorre)
+-- e correntes iniciados at uma data (LeilaoDao.correntesIniciadosAntesDe).
+CREATE INDEX LANCES_POR_LEILAO ON LANCES (LEILAO_ID, ID);
+
+CREATE INDEX LEILAO_POR_ENCERRADO_E_DATA ON LEILAO (ENCERRADO, DATA);
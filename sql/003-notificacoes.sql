@@ -0,0 +1,14 @@
+-- Caixa de sada das notificaes de encerramento (LeilaoDao.encerraNotificando).
+-- A chave nica garante uma notificao por leilo, mesmo com encerramentos
+-- concorrentes.
+CREATE TABLE NOTIFICACOES (
+	ID INT AUTO_INCREMENT PRIMARY KEY,
+	CHAVE VARCHAR(100) NOT NULL,
+	LEILAO_ID INT NOT NULL,
+	TENTATIVAS INT NOT NULL DEFAULT 0,
+	ENVIADA BOOLEAN NOT NULL DEFAULT FALSE,
+	CONSTRAINT NOTIFICACAO_UNICA UNIQUE (CHAVE),
+	FOREIGN KEY (LEILAO_ID) REFERENCES LEILAO (ID)
+);
+
+CREATE INDEX NOTIFICACOES_PENDENTES ON NOTIFICACOES (ENVIADA, ID);
@@ -0,0 +1,14 @@
+-- Pagamentos gerados pelo GeradorDePagamento (PagamentoDao). A coluna PAGO 
+-- marcada na mesma transao que grava o pagamento, e  ela que impede que o
+-- mesmo leilo seja pago duas vezes.
+ALTER TABLE LEILAO ADD COLUMN PAGO BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX LEILAO_POR_ENCERRADO_E_PAGO ON LEILAO (ENCERRADO, PAGO);
+
+CREATE TABLE PAGAMENTO (
+	ID INT AUTO_INCREMENT PRIMARY KEY,
+	LEILAO_ID INT,
+	VALOR DOUBLE NOT NULL,
+	DATA DATE NOT NULL,
+	FOREIGN KEY (LEILAO_ID) REFERENCES LEILAO (ID)
+);
@@ -0,0 +1,11 @@
+-- Reservas de parties entre workers (ReservaDao). A partio 0 de 4 e a
+-- partio 0 de 8 so reservas diferentes, da o TOTAL na chave. EXPIRA_EM em
+-- milissegundos desde a poca.
+CREATE TABLE RESERVA (
+	TAREFA VARCHAR(50) NOT NULL,
+	PARTICAO INT NOT NULL,
+	TOTAL INT NOT NULL,
+	DONO VARCHAR(100) NOT NULL,
+	EXPIRA_EM BIGINT NOT NULL,
+	PRIMARY KEY (TAREFA, TOTAL, PARTICAO)
+);
@@ -0,0 +1,60 @@
+package br.com.caelum.leilao.dominio;
+
+import java.util.List;
+
+/*
+ * Estatsticas do leilo mantidas a cada lance aceito, para que quem precisa
+ * de maior, menor, mdia ou dos maiores lances no tenha que percorrer todos
+ * os lances de novo.
+ */
+public class EstatisticasDoLeilao {
+
+	private final int quantidadeDeMaiores;
+	private final MaioresLances maiores;
+	private double maior = Double.NEGATIVE_INFINITY;
+	private double menor = Double.POSITIVE_INFINITY;
+	private double soma;
+	private int quantidade;
+
+	public EstatisticasDoLeilao(int quantidadeDeMaiores) {
+		this.quantidadeDeMaiores = quantidadeDeMaiores;
+		this.maiores = new MaioresLances(quantidadeDeMaiores);
+	}
+
+	void registra(Lance lance) {
+		double valor = lance.getValor();
+		if(valor > maior) maior = valor;
+		if(valor < menor) menor = valor;
+		soma += valor;
+		quantidade++;
+		maiores.considera(lance);
+	}
+
+	public double getMaiorLance() {
+		return maior;
+	}
+
+	public double getMenorLance() {
+		return menor;
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	public double getSoma() {
+		return soma;
+	}
+
+	public double getMedia() {
+		return quantidade == 0 ? 0 : soma / quantidade;
+	}
+
+	public int getQuantidadeDeMaiores() {
+		return quantidadeDeMaiores;
+	}
+
+	public List<Lance> getMaiores() {
+		return maiores.getLances();
+	}
+}
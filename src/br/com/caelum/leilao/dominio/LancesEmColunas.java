@@ -0,0 +1,133 @@
+package br.com.caelum.leilao.dominio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Guarda os lances em colunas (valores, ids e usurios em vetores paralelos)
+ * em vez de um objeto Lance por lance. Todas as colunas so primitivas e podem
+ * ficar fora do heap, o que tira do coletor de lixo leiles com muitos lances.
+ * 
+ * A coluna de usurios guarda um cdigo por lance, que indexa a tabela de
+ * usurios distintos do leilo. O cdigo no  o id do Usuario porque usurios
+ * ainda no gravados tm id zero.
+ * 
+ * Cada get() monta um Lance novo a partir das colunas:  s uma viso, e
+ * alterar o Lance devolvido no altera o que est guardado. Quem percorre
+ * todos os lances sem precisar do objeto deve usar getValor() e getUsuario().
+ */
+public class LancesEmColunas extends AbstractList<Lance> {
+
+	private static final int CAPACIDADE_INICIAL = 16;
+
+	private final boolean foraDoHeap;
+	private final List<Usuario> usuariosDistintos = new ArrayList<Usuario>();
+	private final Map<Usuario, Integer> codigos = new HashMap<Usuario, Integer>();
+	private DoubleBuffer valores;
+	private IntBuffer ids;
+	private IntBuffer usuarios;
+	private int capacidade;
+	private int tamanho;
+
+	public LancesEmColunas(boolean foraDoHeap) {
+		this.foraDoHeap = foraDoHeap;
+		this.capacidade = CAPACIDADE_INICIAL;
+		this.valores = novosValores(capacidade);
+		this.ids = novosInteiros(capacidade);
+		this.usuarios = novosInteiros(capacidade);
+	}
+
+	@Override
+	public boolean add(Lance lance) {
+		if (tamanho == capacidade) cresce();
+		
+		valores.put(tamanho, lance.getValor());
+		ids.put(tamanho, lance.getId());
+		usuarios.put(tamanho, codigoDo(lance.getUsuario()));
+		tamanho++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public Lance get(int indice) {
+		verifica(indice);
+		Lance lance = new Lance(getUsuario(indice), valores.get(indice));
+		lance.setId(ids.get(indice));
+		return lance;
+	}
+
+	/*
+	 * Acesso direto s colunas, sem montar o Lance.
+	 */
+	public double getValor(int indice) {
+		verifica(indice);
+		return valores.get(indice);
+	}
+
+	public Usuario getUsuario(int indice) {
+		verifica(indice);
+		return usuariosDistintos.get(usuarios.get(indice));
+	}
+
+	@Override
+	public int size() {
+		return tamanho;
+	}
+
+	public boolean isForaDoHeap() {
+		return foraDoHeap;
+	}
+
+	private int codigoDo(Usuario usuario) {
+		Integer codigo = codigos.get(usuario);
+		if (codigo == null) {
+			codigo = usuariosDistintos.size();
+			usuariosDistintos.add(usuario);
+			codigos.put(usuario, codigo);
+		}
+		return codigo;
+	}
+
+	private void verifica(int indice) {
+		if (indice < 0 || indice >= tamanho) {
+			throw new IndexOutOfBoundsException("Lance " + indice + " de " + tamanho);
+		}
+	}
+
+	private void cresce() {
+		capacidade *= 2;
+		
+		DoubleBuffer novosValores = novosValores(capacidade);
+		valores.rewind();
+		novosValores.put(valores);
+		valores = novosValores;
+		
+		ids = copia(ids);
+		usuarios = copia(usuarios);
+	}
+
+	private IntBuffer copia(IntBuffer coluna) {
+		IntBuffer nova = novosInteiros(capacidade);
+		coluna.rewind();
+		nova.put(coluna);
+		return nova;
+	}
+
+	private DoubleBuffer novosValores(int capacidade) {
+		if (!foraDoHeap) return DoubleBuffer.allocate(capacidade);
+		return ByteBuffer.allocateDirect(capacidade * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	private IntBuffer novosInteiros(int capacidade) {
+		if (!foraDoHeap) return IntBuffer.allocate(capacidade);
+		return ByteBuffer.allocateDirect(capacidade * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+}
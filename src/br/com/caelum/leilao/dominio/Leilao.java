@@ -1,60 +1,150 @@
 package br.com.caelum.leilao.dominio;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Leilao {
 
 	private String descricao;
-	private Calendar data;
-	private List<Lance> lances;
-	private boolean encerrado;
+	private Instant data;
+	/* trocados sob a trava do leilo, mas lidos tambm fora dela */
+	private volatile List<Lance> lances;
+	private volatile List<Lance> somenteLeitura;
+	private Map<Usuario, Integer> lancesPorUsuario;
+	private Usuario ultimoUsuario;
+	private volatile EstatisticasDoLeilao estatisticas;
+	private volatile boolean encerrado;
+	private volatile boolean pago;
 	private int id;
 	
 	public Leilao(String descricao) {
-		this(descricao, Calendar.getInstance());
+		this(descricao, Instant.now());
 	}
 	
+	/*
+	 * Adaptador para quem ainda cria leiles a partir de um Calendar.
+	 */
 	public Leilao(String descricao, Calendar data) {
+		this(descricao, data.toInstant());
+	}
+	
+	public Leilao(String descricao, Instant data) {
 		this.descricao = descricao;
 		this.data = data;
 		this.lances = new ArrayList<Lance>();
+		this.somenteLeitura = Collections.unmodifiableList(lances);
+		this.lancesPorUsuario = new HashMap<Usuario, Integer>();
 	}
 	
-	public void propoe(Lance lance) {
-		if(lances.isEmpty() || podeDarLance(lance.getUsuario())) {
+	/*
+	 * As regras (no mximo 5 lances por usurio e nunca dois lances seguidos do
+	 * mesmo usurio) so verificadas contra um ndice mantido a cada lance aceito,
+	 * em vez de percorrer a lista inteira de lances.
+	 * 
+	 * Verificao e registro do lance acontecem sob a trava do leilo, ento
+	 * lances propostos por vrias threads ao mesmo tempo nunca furam as regras.
+	 * Em compensao, os lances de um mesmo leilo so serializados: as regras
+	 * dependem da ordem dos lances, e s lances em leiles diferentes andam em
+	 * paralelo.
+	 * Quem percorre os lances enquanto outras threads ainda propem deve
+	 * faz-lo dentro de um synchronized(leilao).
+	 */
+	public synchronized void propoe(Lance lance) {
+		Usuario usuario = lance.getUsuario();
+		if(lances.isEmpty() || podeDarLance(usuario)) {
 			lances.add(lance);
+			lancesPorUsuario.put(usuario, qtdDeLancesDo(usuario) + 1);
+			ultimoUsuario = usuario;
+			if(estatisticas != null) estatisticas.registra(lance);
 		}
 	}
 
-	private boolean podeDarLance(Usuario usuario) {
-		return !ultimoLanceDado().getUsuario().equals(usuario) && qtdDeLancesDo(usuario) <5;
+	/*
+	 * Passa a manter as estatsticas do leilo a cada novo lance. Os lances j
+	 * dados entram uma nica vez, neste momento.
+	 */
+	public synchronized void mantemEstatisticas(int quantidadeDeMaiores) {
+		EstatisticasDoLeilao novas = new EstatisticasDoLeilao(quantidadeDeMaiores);
+		for(Lance lance : lances) novas.registra(lance);
+		this.estatisticas = novas;
 	}
 
-	private int qtdDeLancesDo(Usuario usuario) {
-		int total = 0;
-		for(Lance l : lances) {
-			if(l.getUsuario().equals(usuario)) total++;
-		}
-		return total;
+	/*
+	 * Passa a guardar os lances em colunas (LancesEmColunas), dentro ou fora do
+	 * heap. Os lances j dados so copiados uma nica vez, neste momento.
+	 */
+	public synchronized void guardaLancesEmColunas(boolean foraDoHeap) {
+		LancesEmColunas colunas = new LancesEmColunas(foraDoHeap);
+		colunas.addAll(lances);
+		this.lances = colunas;
+		this.somenteLeitura = Collections.unmodifiableList(colunas);
+	}
+
+	/*
+	 * As colunas dos lances, se o leilo as usa (guardaLancesEmColunas), ou
+	 * null. Quem as percorre enquanto outras threads ainda propem lances deve
+	 * faz-lo dentro de um synchronized(leilao), a mesma trava do propoe().
+	 */
+	public LancesEmColunas getLancesEmColunas() {
+		return lances instanceof LancesEmColunas ? (LancesEmColunas) lances : null;
+	}
+
+	public boolean temEstatisticas() {
+		return estatisticas != null;
 	}
 
-	private Lance ultimoLanceDado() {
-		return lances.get(lances.size()-1);
+	/*
+	 * As estatsticas so atualizadas pelo propoe(), sob a trava do leilo.
+	 * Quem as l enquanto outras threads ainda propem lances deve faz-lo
+	 * dentro de um synchronized(leilao).
+	 */
+	public EstatisticasDoLeilao getEstatisticas() {
+		return estatisticas;
+	}
+
+	private boolean podeDarLance(Usuario usuario) {
+		return !ultimoUsuario.equals(usuario) && qtdDeLancesDo(usuario) <5;
+	}
+
+	private int qtdDeLancesDo(Usuario usuario) {
+		Integer total = lancesPorUsuario.get(usuario);
+		return total == null ? 0 : total;
 	}
 
 	public String getDescricao() {
 		return descricao;
 	}
 
+	/*
+	 * A mesma viso somente leitura a cada chamada, sem cpia; ela acompanha os
+	 * lances que chegarem depois. Quem a percorre enquanto outras threads ainda
+	 * propem lances deve faz-lo dentro de um synchronized(leilao).
+	 */
 	public List<Lance> getLances() {
-		return Collections.unmodifiableList(lances);
+		return somenteLeitura;
 	}
 
+	public synchronized int getQuantidadeDeLances() {
+		return lances.size();
+	}
+
+	/*
+	 * Adaptador para quem ainda trabalha com Calendar: cada chamada cria um
+	 * Calendar novo, no fuso padro. Nos caminhos quentes, use getInstante().
+	 */
 	public Calendar getData() {
-		return (Calendar) data.clone();
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(data.toEpochMilli());
+		return calendar;
+	}
+
+	public Instant getInstante() {
+		return data;
 	}
 
 	public void encerra() {
@@ -65,6 +155,14 @@ public class Leilao {
 		return encerrado;
 	}
 
+	public void paga() {
+		this.pago = true;
+	}
+	
+	public boolean isPago() {
+		return pago;
+	}
+
 	public void setId(int id) {
 		this.id = id;
 	}
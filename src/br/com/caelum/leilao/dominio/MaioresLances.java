@@ -0,0 +1,66 @@
+package br.com.caelum.leilao.dominio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Mantm apenas os N maiores lances vistos at agora, do maior para o menor.
+ * Lances de mesmo valor ficam na ordem em que chegaram, exatamente como a
+ * ordenao estvel que o Avaliador fazia antes.
+ */
+public class MaioresLances {
+
+	private final double[] valores;
+	private final Lance[] maiores;
+	private final int[] indices;
+	private int tamanho;
+
+	public MaioresLances(int quantidade) {
+		if(quantidade < 1) {
+			throw new IllegalArgumentException(" preciso guardar ao menos um lance!");
+		}
+		this.valores = new double[quantidade];
+		this.maiores = new Lance[quantidade];
+		this.indices = new int[quantidade];
+	}
+
+	public void considera(Lance lance) {
+		int posicao = abreEspacoPara(lance.getValor());
+		if(posicao >= 0) maiores[posicao] = lance;
+	}
+
+	/*
+	 * Para quem percorre LancesEmColunas: guarda s a posio do lance nas
+	 * colunas, sem montar o Lance. Os maiores saem de getLances(colunas).
+	 */
+	public void considera(LancesEmColunas colunas, int indice) {
+		int posicao = abreEspacoPara(colunas.getValor(indice));
+		if(posicao >= 0) indices[posicao] = indice;
+	}
+
+	private int abreEspacoPara(double valor) {
+		int posicao = tamanho;
+		while(posicao > 0 && valores[posicao-1] < valor) posicao--;
+		if(posicao == valores.length) return -1;
+
+		int ultimo = tamanho < valores.length ? tamanho : valores.length - 1;
+		System.arraycopy(valores, posicao, valores, posicao + 1, ultimo - posicao);
+		System.arraycopy(maiores, posicao, maiores, posicao + 1, ultimo - posicao);
+		System.arraycopy(indices, posicao, indices, posicao + 1, ultimo - posicao);
+		valores[posicao] = valor;
+		if(tamanho < valores.length) tamanho++;
+		return posicao;
+	}
+
+	public List<Lance> getLances() {
+		List<Lance> lances = new ArrayList<Lance>(tamanho);
+		for(int i = 0; i < tamanho; i++) lances.add(maiores[i]);
+		return lances;
+	}
+
+	public List<Lance> getLances(LancesEmColunas colunas) {
+		List<Lance> lances = new ArrayList<Lance>(tamanho);
+		for(int i = 0; i < tamanho; i++) lances.add(colunas.get(indices[i]));
+		return lances;
+	}
+}
@@ -0,0 +1,53 @@
+package br.com.caelum.leilao.dominio;
+
+/*
+ * Registro na caixa de sada: um e-mail que ainda precisa ser enviado. A chave
+ * identifica a notificao, para que o mesmo encerramento nunca gere dois
+ * registros.
+ */
+public class Notificacao {
+
+	private int id;
+	private final String chave;
+	private final Leilao leilao;
+	private int tentativas;
+
+	public Notificacao(String chave, Leilao leilao) {
+		this(0, chave, leilao, 0);
+	}
+
+	public Notificacao(int id, String chave, Leilao leilao, int tentativas) {
+		this.id = id;
+		this.chave = chave;
+		this.leilao = leilao;
+		this.tentativas = tentativas;
+	}
+
+	public static Notificacao deEncerramento(Leilao leilao) {
+		return new Notificacao("leilao-encerrado-" + leilao.getId(), leilao);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public Leilao getLeilao() {
+		return leilao;
+	}
+
+	public int getTentativas() {
+		return tentativas;
+	}
+
+	public void falhou() {
+		tentativas++;
+	}
+}
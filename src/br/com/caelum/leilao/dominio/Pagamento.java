@@ -1,20 +1,47 @@
 package br.com.caelum.leilao.dominio;
 
+import java.time.LocalDate;
 import java.util.Calendar;
 
 public class Pagamento {
 
+	private Leilao leilao;
 	private double valor;
-	private Calendar data;
+	private LocalDate data;
 
+	public Pagamento(double valor, LocalDate data) {
+		this(null, valor, data);
+	}
+	/*
+	 * Adaptador para quem ainda informa a data do pagamento com um Calendar.
+	 */
 	public Pagamento(double valor, Calendar data) {
+		this(valor, data.toInstant().atZone(data.getTimeZone().toZoneId()).toLocalDate());
+	}
+	public Pagamento(Leilao leilao, double valor, LocalDate data) {
+		this.leilao = leilao;
 		this.valor = valor;
 		this.data = data;
 	}
+	public Leilao getLeilao() {
+		return leilao;
+	}
 	public double getValor() {
 		return valor;
 	}
+	/*
+	 * Adaptador para quem ainda trabalha com Calendar: cada chamada cria um
+	 * Calendar novo, no incio do dia e no fuso padro. Nos caminhos quentes,
+	 * use getDia().
+	 */
 	public Calendar getData() {
+		if(data == null) return null;
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(data.getYear(), data.getMonthValue() - 1, data.getDayOfMonth());
+		return calendar;
+	}
+	public LocalDate getDia() {
 		return data;
 	}
 }
@@ -2,8 +2,9 @@ package br.com.caelum.leilao.dominio;
 
 public class Usuario {
 
-	private int id;
-	private String nome;
+	private final int id;
+	private final String nome;
+	private final int hash;
 	
 	public Usuario(String nome) {
 		this(0, nome);
@@ -12,6 +13,7 @@ public class Usuario {
 	public Usuario(int id, String nome) {
 		this.id = id;
 		this.nome = nome;
+		this.hash = calculaHash();
 	}
 
 	public int getId() {
@@ -22,8 +24,10 @@ public class Usuario {
 		return nome;
 	}
 
-	@Override
-	public int hashCode() {
+	/*
+	 * O hash  calculado uma nica vez, j que id e nome no mudam.
+	 */
+	private int calculaHash() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + id;
@@ -31,6 +35,11 @@ public class Usuario {
 		return result;
 	}
 
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -40,7 +49,7 @@ public class Usuario {
 		if (getClass() != obj.getClass())
 			return false;
 		Usuario other = (Usuario) obj;
-		if (id != other.id)
+		if (id != other.id || hash != other.hash)
 			return false;
 		if (nome == null) {
 			if (other.nome != null)
@@ -0,0 +1,91 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Mapa de identidade dos usurios j carregados, por id, limitado aos
+ * maximoDeUsuarios usados mais recentemente. Enquanto estiver no cache, o
+ * mesmo usurio  representado pela mesma instncia em todos os leiles
+ * montados, e a linha do banco nem precisa ser lida de novo.
+ * 
+ * Para que vrias threads montando leiles no disputem uma nica trava, os
+ * ids so divididos em segmentos, cada um com seu prprio LRU. O descarte ,
+ * portanto, aproximado: sai o usurio usado h mais tempo no seu segmento.
+ * Caches pequenos tm um segmento s e descartam exatamente pelo LRU.
+ * 
+ * O nome  considerado estvel: mudanas de nome s aparecem depois que o
+ * usurio sai do cache.
+ */
+public class CacheDeUsuarios {
+
+	private static final int MAXIMO_PADRAO = 1000;
+
+	private static final int MAXIMO_DE_SEGMENTOS = 16;
+
+	private static final int USUARIOS_POR_SEGMENTO = 64;
+
+	private final Map<Integer, Usuario>[] segmentos;
+	private final AtomicLong acertos = new AtomicLong();
+	private final AtomicLong faltas = new AtomicLong();
+
+	public CacheDeUsuarios() {
+		this(MAXIMO_PADRAO);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public CacheDeUsuarios(int maximoDeUsuarios) {
+		if(maximoDeUsuarios < 1) {
+			throw new IllegalArgumentException("O cache precisa guardar ao menos um usurio!");
+		}
+		int quantidade = Integer.highestOneBit(Math.max(1, Math.min(MAXIMO_DE_SEGMENTOS, maximoDeUsuarios / USUARIOS_POR_SEGMENTO)));
+		final int maximoPorSegmento = (maximoDeUsuarios + quantidade - 1) / quantidade;
+		
+		this.segmentos = new Map[quantidade];
+		for(int i = 0; i < quantidade; i++) {
+			segmentos[i] = new LinkedHashMap<Integer, Usuario>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry<Integer, Usuario> maisAntigo) {
+					return size() > maximoPorSegmento;
+				}
+			};
+		}
+	}
+
+	/*
+	 * O usurio do id informado, se estiver no cache; seno, null.
+	 */
+	public Usuario busca(int id) {
+		Map<Integer, Usuario> segmento = segmentoDo(id);
+		Usuario usuario;
+		synchronized(segmento) {
+			usuario = segmento.get(id);
+		}
+		if(usuario == null) faltas.incrementAndGet();
+		else acertos.incrementAndGet();
+		return usuario;
+	}
+
+	public void guarda(Usuario usuario) {
+		Map<Integer, Usuario> segmento = segmentoDo(usuario.getId());
+		synchronized(segmento) {
+			segmento.put(usuario.getId(), usuario);
+		}
+	}
+
+	public long getAcertos() {
+		return acertos.get();
+	}
+
+	public long getFaltas() {
+		return faltas.get();
+	}
+
+	private Map<Integer, Usuario> segmentoDo(int id) {
+		return segmentos[id & (segmentos.length - 1)];
+	}
+}
@@ -0,0 +1,96 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Uma conexo com seus PreparedStatements j preparados. Quem usa a conexo
+ * no deve fechar os statements devolvidos por prepara(), eles so
+ * reaproveitados at a conexo ser fechada.
+ */
+public class ConexaoComCache {
+
+	private static final int MAXIMO_DE_STATEMENTS = 32;
+
+	private final Connection conexao;
+	private final Map<String, PreparedStatement> statements;
+	private volatile long livreDesde;
+
+	public ConexaoComCache(Connection conexao) {
+		this.conexao = conexao;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> maisAntigo) {
+				if(size() <= MAXIMO_DE_STATEMENTS) return false;
+				fecha(maisAntigo.getValue());
+				return true;
+			}
+		};
+	}
+
+	public Connection getConexao() {
+		return conexao;
+	}
+
+	public PreparedStatement prepara(String sql) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+		if(ps == null) {
+			ps = conexao.prepareStatement(sql);
+			statements.put(sql, ps);
+		}
+		return ps;
+	}
+
+	public PreparedStatement preparaComChaveGerada(String sql) throws SQLException {
+		String chave = "#chaves#" + sql;
+		PreparedStatement ps = statements.get(chave);
+		if(ps == null) {
+			ps = conexao.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			statements.put(chave, ps);
+		}
+		return ps;
+	}
+
+	/*
+	 * Usados pelo pool para saber h quanto tempo (System.nanoTime) a conexo
+	 * est parada.
+	 */
+	void marcaLivre(long agora) {
+		this.livreDesde = agora;
+	}
+
+	long getLivreDesde() {
+		return livreDesde;
+	}
+
+	public boolean isValida(int segundos) {
+		try {
+			return !conexao.isClosed() && conexao.isValid(segundos);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	public void fecha() {
+		for(PreparedStatement ps : statements.values()) fecha(ps);
+		statements.clear();
+		try {
+			conexao.close();
+		} catch (SQLException e) {
+			// a conexo j no serve mais, nada a fazer
+		}
+	}
+
+	private void fecha(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			// idem
+		}
+	}
+}
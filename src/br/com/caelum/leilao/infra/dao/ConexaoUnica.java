@@ -0,0 +1,22 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.sql.Connection;
+
+/*
+ * Sempre a mesma conexo, como o LeilaoDao fazia antes do pool. No  segura
+ * para vrias threads; serve para testes e ferramentas de uma thread s.
+ */
+public class ConexaoUnica implements ProvedorDeConexoes {
+
+	private final ConexaoComCache conexao;
+
+	public ConexaoUnica(Connection conexao) {
+		this.conexao = new ConexaoComCache(conexao);
+	}
+
+	public ConexaoComCache obtem() {
+		return conexao;
+	}
+
+	public void devolve(ConexaoComCache conexao) { /* continua aberta */ }
+}
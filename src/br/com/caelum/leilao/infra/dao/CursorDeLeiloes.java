@@ -0,0 +1,107 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.io.Closeable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Percorre um ResultSet de leiles com seus lances (ordenado por leilo) e
+ * monta um Leilao por vez. S o leilo corrente fica em memria; o statement
+ * e o ResultSet so fechados, e a conexo devolvida, assim que as linhas
+ * acabam ou quando close()  chamado, o que vier primeiro.
+ */
+class CursorDeLeiloes implements Iterator<Leilao>, Closeable {
+
+	private final PreparedStatement ps;
+	private final ProvedorDeConexoes conexoes;
+	private final ConexaoComCache conexao;
+	private final CacheDeUsuarios usuarios;
+	private ResultSet rs;
+	private boolean temLinha;
+	private boolean fechado;
+
+	CursorDeLeiloes(PreparedStatement ps, ProvedorDeConexoes conexoes, ConexaoComCache conexao, CacheDeUsuarios usuarios) throws SQLException {
+		this.ps = ps;
+		this.conexoes = conexoes;
+		this.conexao = conexao;
+		this.usuarios = usuarios;
+		try {
+			this.rs = ps.executeQuery();
+			avanca();
+		} catch (SQLException e) {
+			fecha();
+			throw e;
+		}
+	}
+
+	public boolean hasNext() {
+		return temLinha;
+	}
+
+	public Leilao next() {
+		if(!temLinha) throw new NoSuchElementException();
+		try {
+			int id = rs.getInt("id");
+			Leilao leilao = new Leilao(rs.getString("descricao"), Instant.ofEpochMilli(rs.getDate("data").getTime()));
+			leilao.setId(id);
+			if(rs.getBoolean("encerrado")) leilao.encerra();
+			if(rs.getBoolean("pago")) leilao.paga();
+			
+			while(temLinha && rs.getInt("id") == id) {
+				int usuarioId = rs.getInt("usuario_id");
+				if(!rs.wasNull()) {
+					leilao.propoe(new Lance(usuario(usuarioId), rs.getDouble("valor")));
+				}
+				avanca();
+			}
+			return leilao;
+		} catch (SQLException e) {
+			fecha();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Usuario usuario(int id) throws SQLException {
+		Usuario usuario = usuarios.busca(id);
+		if(usuario == null) {
+			usuario = new Usuario(id, rs.getString("nome"));
+			usuarios.guarda(usuario);
+		}
+		return usuario;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() {
+		fecha();
+	}
+
+	private void avanca() throws SQLException {
+		temLinha = rs.next();
+		if(!temLinha) fecha();
+	}
+
+	private void fecha() {
+		temLinha = false;
+		if(fechado) return;
+		fechado = true;
+		try {
+			if(rs != null) rs.close();
+			ps.close();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/*
+ * Os iterators devolvidos pelas variantes "percorre..." do repositrio podem
+ * estar presos a recursos (no LeilaoDao, conexo, statement e cursor no
+ * banco). Quem os percorre deve chamar fecha() num finally: assim os recursos
+ * so liberados mesmo que o lao pare antes do fim ou lance uma exceo.
+ * Iterators comuns, de listas por exemplo, so simplesmente ignorados.
+ */
+public final class Cursores {
+
+	private Cursores() {
+	}
+
+	public static void fecha(Iterator<?> iterator) {
+		if(!(iterator instanceof Closeable)) return;
+		try {
+			((Closeable) iterator).close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
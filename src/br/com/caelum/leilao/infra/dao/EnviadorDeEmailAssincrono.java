@@ -0,0 +1,182 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.caelum.leilao.dominio.Leilao;
+
+/*
+ * Decora um EnviadorDeEmail: envia() s coloca o leilo numa fila limitada e
+ * retorna; threads prprias retiram da fila em lotes (at "tamanhoDoLote"
+ * leiles ou at passar "janela" milissegundos) e entregam ao transporte.
+ * Com a fila cheia, envia() espera, segurando quem produz mais rpido do que
+ * o transporte consegue entregar.
+ * 
+ * Depois que o encerramento comea, envia() recusa novos e-mails; o que foi
+ * aceito antes disso  sempre entregue (ou contado como falha).
+ */
+public class EnviadorDeEmailAssincrono implements EnviadorDeEmail {
+
+	private final EnviadorDeEmail transporte;
+	private final BlockingQueue<Leilao> fila;
+	private final int tamanhoDoLote;
+	private final long janela;
+	private final Thread[] carteiros;
+	private final AtomicLong falhas = new AtomicLong();
+	private final AtomicInteger ativos;
+	private final Object monitor = new Object();
+	private long pendentes;
+	private volatile boolean aceitando = true;
+
+	public EnviadorDeEmailAssincrono(EnviadorDeEmail transporte, int capacidade, int threads, int tamanhoDoLote, long janela) {
+		if(capacidade < 1 || threads < 1 || tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("Valores invlidos para o enviador: capacidade " + capacidade
+					+ ", " + threads + " threads, lotes de " + tamanhoDoLote);
+		}
+		this.transporte = transporte;
+		this.fila = new ArrayBlockingQueue<Leilao>(capacidade);
+		this.tamanhoDoLote = tamanhoDoLote;
+		this.janela = janela;
+		this.carteiros = new Thread[threads];
+		this.ativos = new AtomicInteger(threads);
+		for(int i = 0; i < threads; i++) {
+			carteiros[i] = new Thread(new Runnable() {
+				public void run() {
+					trabalha();
+				}
+			}, "carteiro-" + i);
+			carteiros[i].setDaemon(true);
+			carteiros[i].start();
+		}
+	}
+
+	public void envia(Leilao leilao) {
+		synchronized(monitor) {
+			if(!aceitando) throw new IllegalStateException("O enviador de e-mails j foi encerrado!");
+			pendentes++;
+		}
+		try {
+			fila.put(leilao);
+		} catch (InterruptedException e) {
+			concluidos(1);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Espera at que tudo o que j foi enfileirado tenha sido entregue (ou
+	 * tenha falhado).
+	 */
+	public void esvazia() throws InterruptedException {
+		synchronized(monitor) {
+			while(pendentes > 0) monitor.wait();
+		}
+	}
+
+	/*
+	 * Para de aceitar novos e-mails, entrega o que ainda est na fila e
+	 * termina as threads.
+	 */
+	public void encerra() throws InterruptedException {
+		paraDeAceitar();
+		esvazia();
+		for(Thread carteiro : carteiros) carteiro.interrupt();
+		for(Thread carteiro : carteiros) carteiro.join();
+	}
+
+	public long getFalhas() {
+		return falhas.get();
+	}
+
+	/*
+	 * Ao ser interrompida, a thread entrega o lote que estava montando antes
+	 * de sair. A ltima a sair para de aceitar e-mails e entrega o que ainda
+	 * estiver na fila, para que ningum fique esperando no esvazia().
+	 */
+	private void trabalha() {
+		List<Leilao> lote = new ArrayList<Leilao>(tamanhoDoLote);
+		try {
+			while(true) {
+				lote.add(fila.take());
+				
+				long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(janela);
+				while(lote.size() < tamanhoDoLote) {
+					long resta = limite - System.nanoTime();
+					Leilao proximo = resta > 0 ? fila.poll(resta, TimeUnit.NANOSECONDS) : fila.poll();
+					if(proximo == null) break;
+					lote.add(proximo);
+				}
+				
+				entrega(lote);
+				lote = new ArrayList<Leilao>(tamanhoDoLote);
+			}
+		} catch (InterruptedException e) {
+			if(!lote.isEmpty()) entrega(lote);
+			if(ativos.decrementAndGet() == 0) entregaORestante();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void paraDeAceitar() {
+		synchronized(monitor) {
+			aceitando = false;
+		}
+	}
+
+	/*
+	 * Quem j passou pela verificao em envia() ainda pode estar colocando o
+	 * leilo na fila, ento s termina quando no houver mais pendentes.
+	 */
+	private void entregaORestante() {
+		paraDeAceitar();
+		while(true) {
+			List<Leilao> restante = new ArrayList<Leilao>();
+			fila.drainTo(restante);
+			if(!restante.isEmpty()) entrega(restante);
+			synchronized(monitor) {
+				if(pendentes == 0) return;
+			}
+			Thread.yield();
+		}
+	}
+
+	/*
+	 * Qualquer falha do transporte, inclusive um Error, s  contada: se a
+	 * thread morresse aqui, o que ficasse na fila nunca seria entregue e
+	 * esvazia() e encerra() esperariam para sempre.
+	 */
+	private void entrega(List<Leilao> lote) {
+		try {
+			if(transporte instanceof EnviadorDeEmailEmLote) {
+				try {
+					((EnviadorDeEmailEmLote) transporte).enviaTodos(lote);
+				} catch (Throwable e) {
+					falhas.addAndGet(lote.size());
+				}
+			} else {
+				for(Leilao leilao : lote) {
+					try {
+						transporte.envia(leilao);
+					} catch (Throwable e) {
+						falhas.incrementAndGet();
+					}
+				}
+			}
+		} finally {
+			concluidos(lote.size());
+		}
+	}
+
+	private void concluidos(int quantidade) {
+		synchronized(monitor) {
+			pendentes -= quantidade;
+			if(pendentes == 0) monitor.notifyAll();
+		}
+	}
+}
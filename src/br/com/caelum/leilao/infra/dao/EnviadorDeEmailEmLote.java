@@ -0,0 +1,9 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.util.List;
+
+import br.com.caelum.leilao.dominio.Leilao;
+
+public interface EnviadorDeEmailEmLote extends EnviadorDeEmail {
+	void enviaTodos(List<Leilao> leiloes);
+}
@@ -1,72 +1,141 @@
 package br.com.caelum.leilao.infra.dao;
 
 import java.sql.Connection;
-import java.sql.Date;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import br.com.caelum.leilao.dominio.Lance;
 import br.com.caelum.leilao.dominio.Leilao;
-import br.com.caelum.leilao.dominio.Usuario;
+import br.com.caelum.leilao.dominio.Notificacao;
 
-public class LeilaoDao implements RepositorioDeLeiloes {
+public class LeilaoDao implements RepositorioDeLeiloes, RepositorioDeNotificacoes {
 
-	private Connection conexao;
+	private static final int LINHAS_POR_BUSCA = 500;
+
+	private static final int TAMANHO_PADRAO_DO_LOTE = 100;
+
+	private static final int IDS_POR_UPDATE = 500;
+
+	private final ProvedorDeConexoes conexoes;
+	private final int tamanhoDoLote;
+	private final CacheDeUsuarios usuarios;
 
 	public LeilaoDao() {
-		try {
-			this.conexao = DriverManager.getConnection(
-					"jdbc:mysql://localhost/mocks", "root", "");
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+		this(new PoolDeConexoes("jdbc:mysql://localhost/mocks?useCursorFetch=true", "root", "", 1, 10, 5000));
 	}
 
-	private Calendar data(Date date) {
-		Calendar c = Calendar.getInstance();
-		c.setTime(date);
-		return c;
+	public LeilaoDao(Connection conexao) {
+		this(new ConexaoUnica(conexao));
 	}
-	
+
+	public LeilaoDao(ProvedorDeConexoes conexoes) {
+		this(conexoes, TAMANHO_PADRAO_DO_LOTE);
+	}
+
+	public LeilaoDao(ProvedorDeConexoes conexoes, int tamanhoDoLote) {
+		this(conexoes, tamanhoDoLote, new CacheDeUsuarios());
+	}
+
+	public LeilaoDao(ProvedorDeConexoes conexoes, int tamanhoDoLote, CacheDeUsuarios usuarios) {
+		this.conexoes = conexoes;
+		this.tamanhoDoLote = tamanhoDoLote;
+		this.usuarios = usuarios;
+	}
+
 	public void salva(Leilao leilao) {
+		salvaTodos(Collections.singletonList(leilao));
+	}
+	
+	/*
+	 * Todos os leiles e lances so gravados numa nica transao. Os lances
+	 * reaproveitam o mesmo PreparedStatement e vo ao banco em lotes de
+	 * tamanhoDoLote, em vez de uma ida ao banco por lance.
+	 * 
+	 * Qualquer falha, e no s SQLException, desfaz a transao; do contrrio,
+	 * restaurar o autocommit confirmaria leiles gravados sem parte dos lances.
+	 * 
+	 * Os lances de cada leilo so copiados sob o lock do leilo, ento um
+	 * propoe() concorrente no interrompe nem corta pela metade a gravao, e o
+	 * lock no fica preso enquanto se fala com o banco.
+	 */
+	public void salvaTodos(Collection<Leilao> leiloes) {
+		ConexaoComCache cache = conexoes.obtem();
+		Connection conexao = cache.getConexao();
 		try {
 			String sql = "INSERT INTO LEILAO (DESCRICAO, DATA, ENCERRADO) VALUES (?,?,?);";
-			PreparedStatement ps = conexao.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-			ps.setString(1, leilao.getDescricao());
-			ps.setDate(2, new java.sql.Date(leilao.getData().getTimeInMillis()));
-			ps.setBoolean(3, leilao.isEncerrado());
+			PreparedStatement ps = cache.preparaComChaveGerada(sql);
+			sql = "INSERT INTO LANCES (LEILAO_ID, USUARIO_ID, VALOR) VALUES (?,?,?);";
+			PreparedStatement ps2 = cache.prepara(sql);
 			
-			ps.execute();
-			
-			ResultSet generatedKeys = ps.getGeneratedKeys();
-	        if (generatedKeys.next()) {
-	            leilao.setId(generatedKeys.getInt(1));
-	        }
-			
-			for(Lance lance : leilao.getLances()) {
-				sql = "INSERT INTO LANCES (LEILAO_ID, USUARIO_ID, VALOR) VALUES (?,?,?);";
-				PreparedStatement ps2 = conexao.prepareStatement(sql);
-				ps2.setInt(1, leilao.getId());
-				ps2.setInt(2, lance.getUsuario().getId());
-				ps2.setDouble(3, lance.getValor());
-				
-				ps2.execute();
-				ps2.close();
+			boolean autoCommit = conexao.getAutoCommit();
+			conexao.setAutoCommit(false);
+			boolean sucesso = false;
+			try {
+				int pendentes = 0;
+				for(Leilao leilao : leiloes) {
+					ps.setString(1, leilao.getDescricao());
+					ps.setDate(2, new java.sql.Date(leilao.getInstante().toEpochMilli()));
+					ps.setBoolean(3, leilao.isEncerrado());
+					
+					ps.execute();
+					
+					ResultSet generatedKeys = ps.getGeneratedKeys();
+					if (generatedKeys.next()) {
+						leilao.setId(generatedKeys.getInt(1));
+					}
+					generatedKeys.close();
+					
+					List<Lance> lances;
+					synchronized(leilao) {
+						lances = new ArrayList<Lance>(leilao.getLances());
+					}
+					for(Lance lance : lances) {
+						ps2.setInt(1, leilao.getId());
+						ps2.setInt(2, lance.getUsuario().getId());
+						ps2.setDouble(3, lance.getValor());
+						ps2.addBatch();
+						
+						if(++pendentes == tamanhoDoLote) {
+							ps2.executeBatch();
+							pendentes = 0;
+						}
+					}
+				}
+				if(pendentes > 0) ps2.executeBatch();
 				
+				conexao.commit();
+				sucesso = true;
+			} finally {
+				if(!sucesso) {
+					ps2.clearBatch();
+					conexao.rollback();
+				}
+				conexao.setAutoCommit(autoCommit);
 			}
-			
-			ps.close();
-			
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(cache);
+		}
+	}
+	
+	public Leilao porId(int id) {
+		Iterator<Leilao> leiloes = percorre("L.ID = ?", id).iterator();
+		try {
+			return leiloes.hasNext() ? leiloes.next() : null;
+		} finally {
+			Cursores.fecha(leiloes);
 		}
-		
 	}
 	
 	public List<Leilao> encerrados() {
@@ -77,57 +146,324 @@ public class LeilaoDao implements RepositorioDeLeiloes {
 		return porEncerrado(false);
 	}
 	
+	public Iterable<Leilao> percorreEncerrados() {
+		return percorre("L.ENCERRADO = ?", true);
+	}
+	
+	public Iterable<Leilao> percorreCorrentes() {
+		return percorre("L.ENCERRADO = ?", false);
+	}
+	
+	/*
+	 * Consulta pensada para o ndice (ENCERRADO, PAGO) da tabela LEILAO; a
+	 * coluna PAGO  marcada pelo PagamentoDao junto com o pagamento.
+	 */
+	public Iterable<Leilao> percorreEncerradosSemPagamento() {
+		return percorre("L.ENCERRADO = ? AND L.PAGO = ?", true, false);
+	}
+	
+	/*
+	 * Como a coluna DATA guarda apenas o dia, a comparao inclui o dia inteiro
+	 * da data limite. Quem precisa de preciso de horrio refina o resultado.
+	 * Consulta pensada para o ndice (ENCERRADO, DATA) da tabela LEILAO.
+	 */
+	public Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia) {
+		return percorre("L.ENCERRADO = ? AND L.DATA <= ?", false, java.sql.Date.valueOf(dia));
+	}
+	
+	public Iterable<Leilao> percorreEncerrados(Particao particao) {
+		return percorre("L.ENCERRADO = ? AND MOD(L.ID, ?) = ?", true, particao.getTotal(), particao.getNumero());
+	}
+	
+	public Iterable<Leilao> percorreEncerradosSemPagamento(Particao particao) {
+		return percorre("L.ENCERRADO = ? AND L.PAGO = ? AND MOD(L.ID, ?) = ?", true, false, particao.getTotal(), particao.getNumero());
+	}
+	
+	public Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia, Particao particao) {
+		return percorre("L.ENCERRADO = ? AND L.DATA <= ? AND MOD(L.ID, ?) = ?", false, java.sql.Date.valueOf(dia),
+				particao.getTotal(), particao.getNumero());
+	}
+	
 	private List<Leilao> porEncerrado(boolean status) {
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		Iterator<Leilao> cursor = percorre("L.ENCERRADO = ?", status).iterator();
 		try {
-			String sql = "SELECT * FROM LEILAO WHERE ENCERRADO = " + status + ";";
-			
-			PreparedStatement ps = conexao.prepareStatement(sql);
-			ResultSet rs = ps.executeQuery();
-			
-			List<Leilao> leiloes = new ArrayList<Leilao>();
-			while(rs.next()) {
-				Leilao leilao = new Leilao(rs.getString("descricao"), data(rs.getDate("data")));
-				leilao.setId(rs.getInt("id"));
-				if(rs.getBoolean("encerrado")) leilao.encerra();
-				
-				String sql2 = "SELECT VALOR, NOME, U.ID AS USUARIO_ID, L.ID AS LANCE_ID FROM LANCES L INNER JOIN USUARIO U ON U.ID = L.USUARIO_ID WHERE LEILAO_ID = " + rs.getInt("id");
-				PreparedStatement ps2 = conexao.prepareStatement(sql2);
-				ResultSet rs2 = ps2.executeQuery();
+			while(cursor.hasNext()) leiloes.add(cursor.next());
+		} finally {
+			Cursores.fecha(cursor);
+		}
+		return leiloes;
+	}
+
+	/*
+	 * Leiles e lances vm numa nica consulta, ordenada por leilo e pela ordem
+	 * em que os lances foram dados. O driver busca as linhas aos poucos (fetch
+	 * size) e o CursorDeLeiloes monta um Leilao por vez, sem consultas extras.
+	 * A conexo s volta ao pool quando o cursor chega ao fim ou  fechado.
+	 */
+	private Iterable<Leilao> percorre(final String condicao, final Object... parametros) {
+		return new Iterable<Leilao>() {
+			public Iterator<Leilao> iterator() {
+				String sql = "SELECT L.ID, L.DESCRICAO, L.DATA, L.ENCERRADO, L.PAGO, LA.VALOR, U.ID AS USUARIO_ID, U.NOME "
+						+ "FROM LEILAO L LEFT JOIN (LANCES LA INNER JOIN USUARIO U ON U.ID = LA.USUARIO_ID) ON LA.LEILAO_ID = L.ID "
+						+ "WHERE " + condicao + " ORDER BY L.ID, LA.ID;";
 				
-				while(rs2.next()) {
-					Usuario usuario = new Usuario(rs2.getInt("id"), rs2.getString("nome"));
-					Lance lance = new Lance(usuario, rs2.getDouble("valor"));
-					
-					leilao.propoe(lance);
+				ConexaoComCache conexao = conexoes.obtem();
+				PreparedStatement ps;
+				try {
+					ps = conexao.getConexao().prepareStatement(sql);
+					ps.setFetchSize(LINHAS_POR_BUSCA);
+					for(int i = 0; i < parametros.length; i++) {
+						ps.setObject(i + 1, parametros[i]);
+					}
+				} catch (SQLException e) {
+					conexoes.devolve(conexao);
+					throw new RuntimeException(e);
 				}
-				rs2.close();
-				ps2.close();
-				
-				leiloes.add(leilao);
 				
+				try {
+					return new CursorDeLeiloes(ps, conexoes, conexao, usuarios);
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
 			}
-			rs.close();
-			ps.close();
-			
-			return leiloes;
-		} catch (SQLException e) {
-			throw new RuntimeException(e);
-		}
+		};
 	}
 
 	public void atualiza(Leilao leilao) {
 		
+		ConexaoComCache conexao = conexoes.obtem();
 		try {
 			String sql = "UPDATE LEILAO SET DESCRICAO=?, DATA=?, ENCERRADO=? WHERE ID = ?;";
-			PreparedStatement ps = conexao.prepareStatement(sql);
+			PreparedStatement ps = conexao.prepara(sql);
 			ps.setString(1, leilao.getDescricao());
-			ps.setDate(2, new java.sql.Date(leilao.getData().getTimeInMillis()));
+			ps.setDate(2, new java.sql.Date(leilao.getInstante().toEpochMilli()));
 			ps.setBoolean(3, leilao.isEncerrado());
 			ps.setInt(4, leilao.getId());
 
 			ps.execute();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+	
+	public void atualizaEncerramento(Leilao leilao) {
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement ps = conexao.prepara("UPDATE LEILAO SET ENCERRADO=? WHERE ID = ?;");
+			ps.setBoolean(1, leilao.isEncerrado());
+			ps.setInt(2, leilao.getId());
+
+			ps.execute();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+	
+	/*
+	 * Um UPDATE ... WHERE ID IN (...) para cada grupo de at IDS_POR_UPDATE ids.
+	 * Como quase todos os grupos tm o mesmo tamanho, o statement  reaproveitado.
+	 */
+	public void encerraTodos(Collection<Integer> ids) {
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			encerraEmGrupos(conexao, ids);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+
+	/*
+	 * O UPDATE dos leiles e os registros na tabela NOTIFICACOES entram na
+	 * mesma transao. A chave da notificao  nica, ento encerrar de novo
+	 * o mesmo leilo no gera um segundo e-mail.
+	 * 
+	 * Se dois encerramentos do mesmo leilo correm juntos, ambos podem passar
+	 * pelo NOT EXISTS e um deles esbarra na chave nica. A transao desse 
+	 * repetida uma vez: agora o NOT EXISTS enxerga a notificao j gravada e
+	 * o resultado  o mesmo de um encerramento que deu certo.
+	 * 
+	 * Qualquer outra falha tambm desfaz a transao, para que nenhum leilo
+	 * fique encerrado sem a sua notificao.
+	 */
+	public void encerraNotificando(Collection<Leilao> leiloes) {
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			try {
+				encerraNotificando(conexao, leiloes);
+			} catch (SQLException e) {
+				if(!chaveDuplicada(e)) throw e;
+				encerraNotificando(conexao, leiloes);
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+
+	private void encerraNotificando(ConexaoComCache cache, Collection<Leilao> leiloes) throws SQLException {
+		Connection conexao = cache.getConexao();
+		PreparedStatement ps = cache.prepara("INSERT INTO NOTIFICACOES (CHAVE, LEILAO_ID, TENTATIVAS, ENVIADA) "
+				+ "SELECT ?, ?, 0, false FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM NOTIFICACOES WHERE CHAVE = ?);");
+		
+		boolean autoCommit = conexao.getAutoCommit();
+		conexao.setAutoCommit(false);
+		boolean sucesso = false;
+		try {
+			List<Integer> ids = new ArrayList<Integer>(leiloes.size());
+			for(Leilao leilao : leiloes) {
+				ids.add(leilao.getId());
+				
+				Notificacao notificacao = Notificacao.deEncerramento(leilao);
+				ps.setString(1, notificacao.getChave());
+				ps.setInt(2, leilao.getId());
+				ps.setString(3, notificacao.getChave());
+				ps.addBatch();
+			}
+			encerraEmGrupos(cache, ids);
+			ps.executeBatch();
+			
+			conexao.commit();
+			sucesso = true;
+		} finally {
+			if(!sucesso) {
+				ps.clearBatch();
+				conexao.rollback();
+			}
+			conexao.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static boolean chaveDuplicada(SQLException e) {
+		for(SQLException erro = e; erro != null; erro = erro.getNextException()) {
+			if(erro.getSQLState() != null && erro.getSQLState().startsWith("23")) return true;
+		}
+		return false;
+	}
+
+	private void encerraEmGrupos(ConexaoComCache conexao, Collection<Integer> ids) throws SQLException {
+		List<Integer> grupo = new ArrayList<Integer>(IDS_POR_UPDATE);
+		for(Integer id : ids) {
+			grupo.add(id);
+			if(grupo.size() == IDS_POR_UPDATE) {
+				encerra(conexao, grupo);
+				grupo.clear();
+			}
+		}
+		if(!grupo.isEmpty()) encerra(conexao, grupo);
+	}
+
+	private void encerra(ConexaoComCache conexao, List<Integer> grupo) throws SQLException {
+		StringBuilder sql = new StringBuilder("UPDATE LEILAO SET ENCERRADO=true WHERE ID IN (?");
+		for(int i = 1; i < grupo.size(); i++) sql.append(",?");
+		sql.append(");");
+		
+		PreparedStatement ps = conexao.prepara(sql.toString());
+		for(int i = 0; i < grupo.size(); i++) {
+			ps.setInt(i + 1, grupo.get(i));
+		}
+		ps.execute();
+	}
+	
+	/*
+	 * Os leiles das notificaes vm completos, com os lances, como o carteiro
+	 * os recebia no envio direto. Primeiro a pgina de notificaes; depois, j
+	 * com a conexo devolvida, os leiles dela numa nica consulta do percorre().
+	 */
+	public List<Notificacao> pendentes(int depoisDoId, int quantidade, int tentativasMaximas) {
+		
+		List<Notificacao> pagina = new ArrayList<Notificacao>();
+		List<Integer> leiloesDaPagina = new ArrayList<Integer>();
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement ps = conexao.prepara("SELECT N.ID, N.CHAVE, N.TENTATIVAS, N.LEILAO_ID "
+					+ "FROM NOTIFICACOES N INNER JOIN LEILAO L ON L.ID = N.LEILAO_ID "
+					+ "WHERE N.ENVIADA = false AND N.TENTATIVAS < ? AND N.ID > ? ORDER BY N.ID LIMIT ?;");
+			ps.setInt(1, tentativasMaximas);
+			ps.setInt(2, depoisDoId);
+			ps.setInt(3, quantidade);
+			
+			ResultSet rs = ps.executeQuery();
+			while(rs.next()) {
+				pagina.add(new Notificacao(rs.getInt("id"), rs.getString("chave"), null, rs.getInt("tentativas")));
+				leiloesDaPagina.add(rs.getInt("leilao_id"));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+		
+		Map<Integer, Leilao> leiloes = porIds(new LinkedHashSet<Integer>(leiloesDaPagina));
+		List<Notificacao> notificacoes = new ArrayList<Notificacao>(pagina.size());
+		for(int i = 0; i < pagina.size(); i++) {
+			Notificacao notificacao = pagina.get(i);
+			notificacoes.add(new Notificacao(notificacao.getId(), notificacao.getChave(),
+					leiloes.get(leiloesDaPagina.get(i)), notificacao.getTentativas()));
+		}
+		return notificacoes;
+	}
+
+	private Map<Integer, Leilao> porIds(Collection<Integer> ids) {
+		Map<Integer, Leilao> leiloes = new HashMap<Integer, Leilao>();
+		if(ids.isEmpty()) return leiloes;
+		
+		StringBuilder condicao = new StringBuilder("L.ID IN (?");
+		for(int i = 1; i < ids.size(); i++) condicao.append(",?");
+		condicao.append(")");
+		
+		Iterator<Leilao> cursor = percorre(condicao.toString(), ids.toArray()).iterator();
+		try {
+			while(cursor.hasNext()) {
+				Leilao leilao = cursor.next();
+				leiloes.put(leilao.getId(), leilao);
+			}
+		} finally {
+			Cursores.fecha(cursor);
+		}
+		return leiloes;
+	}
+	
+	public void marcaEnviadas(Collection<Notificacao> notificacoes) {
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement ps = conexao.prepara("UPDATE NOTIFICACOES SET ENVIADA = true WHERE ID = ?;");
+			for(Notificacao notificacao : notificacoes) {
+				ps.setInt(1, notificacao.getId());
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+	
+	public void registraFalha(Notificacao notificacao) {
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement ps = conexao.prepara("UPDATE NOTIFICACOES SET TENTATIVAS = TENTATIVAS + 1 WHERE ID = ?;");
+			ps.setInt(1, notificacao.getId());
+			ps.execute();
+			notificacao.falhou();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
 		}
 	}
 	
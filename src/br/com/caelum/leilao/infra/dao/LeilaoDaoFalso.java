@@ -1,37 +1,307 @@
 package br.com.caelum.leilao.infra.dao;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Notificacao;
 
-public class LeilaoDaoFalso implements RepositorioDeLeiloes {
+/*
+ * Repositrio em memria, seguro para vrias threads.
+ * 
+ * Os leiles ficam indexados por id e separados em parties (correntes,
+ * encerrados e encerrados sem pagamento), mais um ndice dos correntes por
+ * dia de incio. Assim cada consulta percorre s o que vai devolver. As
+ * parties so mapas concorrentes ordenados por id, lidos sem trava; quem
+ * move um leilo de partio (salva, atualiza, encerra...) trava apenas a
+ * faixa de ids daquele leilo.
+ * 
+ * As consultas por Particao usam os mesmos ndices, divididos por id % total.
+ * A diviso de um total  montada na primeira consulta que o usa e, a partir
+ * da, mantida junto com os ndices gerais; cada total diferente em uso
+ * mantm mais uma cpia dos ndices.
+ * 
+ * Leiles sem id recebem um ao serem salvos, como faria o banco.
+ */
+public class LeilaoDaoFalso implements RepositorioDeLeiloes, RepositorioDeNotificacoes {
 
-	private static List<Leilao> leiloes = new ArrayList<Leilao>();;
+	private static final int FAIXAS = 16;
+
+	private final AtomicInteger proximoId = new AtomicInteger();
+	private final ConcurrentMap<Integer, Leilao> porId = new ConcurrentHashMap<Integer, Leilao>();
+	private final Indices todos = new Indices();
+	/* chave: total de parties; valor: os ndices de cada partio */
+	private final ConcurrentMap<Integer, Indices[]> particionados = new ConcurrentHashMap<Integer, Indices[]>();
+	private final Object[] travas = new Object[FAIXAS];
+
+	private final AtomicInteger proximaNotificacao = new AtomicInteger();
+	private final ConcurrentSkipListMap<Integer, Notificacao> caixaDeSaida = new ConcurrentSkipListMap<Integer, Notificacao>();
+	private final Set<String> chavesNotificadas = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public LeilaoDaoFalso() {
+		for(int i = 0; i < FAIXAS; i++) travas[i] = new Object();
+	}
 	
 	public void salva(Leilao leilao) {
-		leiloes.add(leilao);
+		if(leilao.getId() == 0) leilao.setId(proximoId.incrementAndGet());
+		else reservaAte(leilao.getId());
+		porId.put(leilao.getId(), leilao);
+		indexa(leilao);
 	}
 
-	public List<Leilao> encerrados() {
+	public void salvaTodos(Collection<Leilao> novos) {
+		for(Leilao leilao : novos) salva(leilao);
+	}
+
+	private void reservaAte(int id) {
+		int atual = proximoId.get();
+		while(atual < id && !proximoId.compareAndSet(atual, id)) atual = proximoId.get();
+	}
+
+	public Leilao porId(int id) {
+		return porId.get(id);
+	}
+
+	/*
+	 * ndices de um conjunto de leiles: todos eles, ou os de uma partio.
+	 */
+	private static class Indices {
+		private final ConcurrentSkipListMap<Integer, Leilao> correntes = new ConcurrentSkipListMap<Integer, Leilao>();
+		private final ConcurrentSkipListMap<Integer, Leilao> encerrados = new ConcurrentSkipListMap<Integer, Leilao>();
+		private final ConcurrentSkipListMap<Integer, Leilao> semPagamento = new ConcurrentSkipListMap<Integer, Leilao>();
+		/* chave: dia de incio (epoch day) nos 32 bits altos, id nos 32 baixos */
+		private final ConcurrentSkipListMap<Long, Leilao> correntesPorDia = new ConcurrentSkipListMap<Long, Leilao>();
+
+		/*
+		 * Coloca o leilo nas parties que correspondem ao estado atual dele.
+		 */
+		void indexa(Leilao leilao, Long chaveDoDia) {
+			int id = leilao.getId();
+			if(leilao.isEncerrado()) {
+				correntes.remove(id);
+				correntesPorDia.remove(chaveDoDia);
+				encerrados.put(id, leilao);
+				if(leilao.isPago()) semPagamento.remove(id);
+				else semPagamento.put(id, leilao);
+			} else {
+				encerrados.remove(id);
+				semPagamento.remove(id);
+				correntes.put(id, leilao);
+				correntesPorDia.put(chaveDoDia, leilao);
+			}
+		}
+	}
+
+	private void indexa(Leilao leilao) {
+		int id = leilao.getId();
+		Long chaveDoDia = chaveDoDia(leilao);
 		
-		List<Leilao> filtrados = new ArrayList<Leilao>();
-		for(Leilao leilao : leiloes) {
-			if(leilao.isEncerrado()) filtrados.add(leilao);
+		synchronized (travas[id & (FAIXAS - 1)]) {
+			todos.indexa(leilao, chaveDoDia);
+			for(Indices[] particoes : particionados.values()) {
+				particoes[Math.floorMod(id, particoes.length)].indexa(leilao, chaveDoDia);
+			}
+		}
+	}
+
+	private Indices indicesDa(Particao particao) {
+		Indices[] particoes = particionados.get(particao.getTotal());
+		if(particoes == null) particoes = divideEm(particao.getTotal());
+		return particoes[particao.getNumero()];
+	}
+
+	/*
+	 * Monta a diviso com todas as faixas travadas, para que nenhum leilo
+	 * mude de estado enquanto os ndices da diviso so preenchidos.
+	 */
+	private Indices[] divideEm(final int total) {
+		final List<Indices[]> divisao = new ArrayList<Indices[]>(1);
+		comTodasAsFaixasTravadas(0, new Runnable() {
+			public void run() {
+				Indices[] particoes = particionados.get(total);
+				if(particoes == null) {
+					particoes = new Indices[total];
+					for(int i = 0; i < total; i++) particoes[i] = new Indices();
+					for(Leilao leilao : porId.values()) {
+						particoes[Math.floorMod(leilao.getId(), total)].indexa(leilao, chaveDoDia(leilao));
+					}
+					particionados.put(total, particoes);
+				}
+				divisao.add(particoes);
+			}
+		});
+		return divisao.get(0);
+	}
+
+	private void comTodasAsFaixasTravadas(int faixa, Runnable trabalho) {
+		if(faixa == FAIXAS) {
+			trabalho.run();
+			return;
+		}
+		synchronized (travas[faixa]) {
+			comTodasAsFaixasTravadas(faixa + 1, trabalho);
 		}
+	}
+
+	private Long chaveDoDia(Leilao leilao) {
+		LocalDate dia = leilao.getInstante().atZone(ZoneId.systemDefault()).toLocalDate();
+		return chaveDoDia(dia.toEpochDay(), leilao.getId());
+	}
+
+	private static long chaveDoDia(long epochDay, int id) {
+		return (epochDay << 32) | (id & 0xffffffffL);
+	}
 
-		return filtrados;
+	public List<Leilao> encerrados() {
+		return new ArrayList<Leilao>(todos.encerrados.values());
 	}
 	
 	public List<Leilao> correntes() {
-		
-		List<Leilao> filtrados = new ArrayList<Leilao>();
-		for(Leilao leilao : leiloes) {
-			if(!leilao.isEncerrado()) filtrados.add(leilao);
-		}
+		return new ArrayList<Leilao>(todos.correntes.values());
+	}
+	
+	public Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia) {
+		return correntesIniciadosAntesDe(todos, dia);
+	}
+	
+	public Iterable<Leilao> percorreEncerrados() {
+		return Collections.unmodifiableCollection(todos.encerrados.values());
+	}
+	
+	public Iterable<Leilao> percorreCorrentes() {
+		return Collections.unmodifiableCollection(todos.correntes.values());
+	}
+	
+	public Iterable<Leilao> percorreEncerradosSemPagamento() {
+		return semPagamento(todos);
+	}
+	
+	public Iterable<Leilao> percorreEncerrados(Particao particao) {
+		return Collections.unmodifiableCollection(indicesDa(particao).encerrados.values());
+	}
+	
+	public Iterable<Leilao> percorreEncerradosSemPagamento(Particao particao) {
+		return semPagamento(indicesDa(particao));
+	}
+	
+	public Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia, Particao particao) {
+		return correntesIniciadosAntesDe(indicesDa(particao), dia);
+	}
+	
+	/*
+	 * Percorre apenas a parte do ndice por dia que vai at o dia limite.
+	 */
+	private Iterable<Leilao> correntesIniciadosAntesDe(Indices indices, LocalDate dia) {
+		long limite = chaveDoDia(dia.toEpochDay() + 1, 0);
+		return Collections.unmodifiableCollection(indices.correntesPorDia.headMap(limite, false).values());
+	}
+	
+	/*
+	 * Os leiles pagos depois de entrarem na partio saem dela na primeira
+	 * vez em que so encontrados aqui.
+	 */
+	private Iterable<Leilao> semPagamento(final Indices indices) {
+		return filtra(indices.semPagamento.values(), new Filtro() {
+			public boolean aceita(Leilao leilao) {
+				if(!leilao.isPago()) return true;
+				indices.semPagamento.remove(leilao.getId(), leilao);
+				return false;
+			}
+		});
+	}
+	
+	private interface Filtro {
+		boolean aceita(Leilao leilao);
+	}
+	
+	private Iterable<Leilao> filtra(final Iterable<Leilao> leiloes, final Filtro filtro) {
+		return new Iterable<Leilao>() {
+			public Iterator<Leilao> iterator() {
+				final Iterator<Leilao> todos = leiloes.iterator();
+				return new Iterator<Leilao>() {
+					private Leilao proximo = buscaProximo();
+
+					private Leilao buscaProximo() {
+						while(todos.hasNext()) {
+							Leilao leilao = todos.next();
+							if(filtro.aceita(leilao)) return leilao;
+						}
+						return null;
+					}
 
-		return filtrados;
+					public boolean hasNext() {
+						return proximo != null;
+					}
+
+					public Leilao next() {
+						if(proximo == null) throw new NoSuchElementException();
+						Leilao atual = proximo;
+						proximo = buscaProximo();
+						return atual;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 	
-	public void atualiza(Leilao leilao) { /* faz nada! */ }
+	public void atualiza(Leilao leilao) {
+		if(porId.containsKey(leilao.getId())) indexa(leilao);
+	}
+
+	public void atualizaEncerramento(Leilao leilao) {
+		atualiza(leilao);
+	}
+
+	public void encerraTodos(Collection<Integer> ids) {
+		for(Integer id : ids) {
+			Leilao leilao = porId.get(id);
+			if(leilao == null) continue;
+			leilao.encerra();
+			indexa(leilao);
+		}
+	}
+
+	public void encerraNotificando(Collection<Leilao> encerrados) {
+		for(Leilao leilao : encerrados) {
+			leilao.encerra();
+			atualiza(leilao);
+			Notificacao notificacao = Notificacao.deEncerramento(leilao);
+			if(chavesNotificadas.add(notificacao.getChave())) {
+				notificacao.setId(proximaNotificacao.incrementAndGet());
+				caixaDeSaida.put(notificacao.getId(), notificacao);
+			}
+		}
+	}
+
+	public List<Notificacao> pendentes(int depoisDoId, int quantidade, int tentativasMaximas) {
+		List<Notificacao> pendentes = new ArrayList<Notificacao>();
+		for(Notificacao notificacao : caixaDeSaida.tailMap(depoisDoId, false).values()) {
+			if(pendentes.size() == quantidade) break;
+			if(notificacao.getTentativas() < tentativasMaximas) pendentes.add(notificacao);
+		}
+		return pendentes;
+	}
+
+	public void marcaEnviadas(Collection<Notificacao> enviadas) {
+		for(Notificacao notificacao : enviadas) caixaDeSaida.remove(notificacao.getId());
+	}
+
+	public void registraFalha(Notificacao notificacao) {
+		notificacao.falhou();
+	}
 }
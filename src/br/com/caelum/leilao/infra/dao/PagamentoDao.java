@@ -0,0 +1,125 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.com.caelum.leilao.dominio.Pagamento;
+
+public class PagamentoDao implements RepositorioDePagamentos {
+
+	private static final int TAMANHO_PADRAO_DO_LOTE = 500;
+
+	private final ProvedorDeConexoes conexoes;
+	private final int tamanhoDoLote;
+
+	public PagamentoDao(ProvedorDeConexoes conexoes) {
+		this(conexoes, TAMANHO_PADRAO_DO_LOTE);
+	}
+
+	public PagamentoDao(ProvedorDeConexoes conexoes, int tamanhoDoLote) {
+		this.conexoes = conexoes;
+		this.tamanhoDoLote = tamanhoDoLote;
+	}
+
+	public void salva(Pagamento pagamento) {
+		salvaTodos(Collections.singletonList(pagamento));
+	}
+
+	/*
+	 * Todos os pagamentos numa nica transao, com os mesmos PreparedStatements
+	 * enviados ao banco em lotes de tamanhoDoLote.
+	 * 
+	 * Antes de gravar o pagamento de um leilo, o leilo  marcado como pago
+	 * (s se ainda no estava). Se outro pagamento j o marcou, numa execuo
+	 * anterior que caiu no meio do caminho ou em outra em andamento, o
+	 * pagamento  descartado. Assim, repetir a gerao no duplica pagamentos.
+	 * 
+	 * Qualquer falha no meio do lote, e no s SQLException, desfaz a transao:
+	 * restaurar o autocommit confirmaria as marcaes sem os pagamentos.
+	 */
+	public void salvaTodos(List<Pagamento> pagamentos) {
+		ConexaoComCache cache = conexoes.obtem();
+		Connection conexao = cache.getConexao();
+		try {
+			PreparedStatement marca = cache.prepara("UPDATE LEILAO SET PAGO = true WHERE ID = ? AND PAGO = false;");
+			PreparedStatement insere = cache.prepara("INSERT INTO PAGAMENTO (LEILAO_ID, VALOR, DATA) VALUES (?,?,?);");
+			
+			boolean autoCommit = conexao.getAutoCommit();
+			conexao.setAutoCommit(false);
+			boolean sucesso = false;
+			try {
+				List<Pagamento> aGravar = marcaPagos(marca, pagamentos);
+				
+				int pendentes = 0;
+				for(Pagamento pagamento : aGravar) {
+					if(pagamento.getLeilao() == null) insere.setNull(1, Types.INTEGER);
+					else insere.setInt(1, pagamento.getLeilao().getId());
+					insere.setDouble(2, pagamento.getValor());
+					insere.setDate(3, java.sql.Date.valueOf(pagamento.getDia()));
+					insere.addBatch();
+					
+					if(++pendentes == tamanhoDoLote) {
+						insere.executeBatch();
+						pendentes = 0;
+					}
+				}
+				if(pendentes > 0) insere.executeBatch();
+				
+				conexao.commit();
+				sucesso = true;
+				
+				for(Pagamento pagamento : aGravar) {
+					if(pagamento.getLeilao() != null) pagamento.getLeilao().paga();
+				}
+			} finally {
+				if(!sucesso) {
+					marca.clearBatch();
+					insere.clearBatch();
+					conexao.rollback();
+				}
+				conexao.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(cache);
+		}
+	}
+
+	/*
+	 * Devolve os pagamentos que devem ser gravados: os sem leilo e aqueles
+	 * cujo leilo acabou de ser marcado como pago por este lote.
+	 */
+	private List<Pagamento> marcaPagos(PreparedStatement marca, List<Pagamento> pagamentos) throws SQLException {
+		List<Pagamento> aGravar = new ArrayList<Pagamento>(pagamentos.size());
+		List<Pagamento> marcando = new ArrayList<Pagamento>(Math.min(tamanhoDoLote, pagamentos.size()));
+		
+		for(Pagamento pagamento : pagamentos) {
+			if(pagamento.getLeilao() == null) {
+				aGravar.add(pagamento);
+				continue;
+			}
+			
+			marca.setInt(1, pagamento.getLeilao().getId());
+			marca.addBatch();
+			marcando.add(pagamento);
+			if(marcando.size() == tamanhoDoLote) confirma(marca, marcando, aGravar);
+		}
+		if(!marcando.isEmpty()) confirma(marca, marcando, aGravar);
+		
+		return aGravar;
+	}
+
+	private void confirma(PreparedStatement marca, List<Pagamento> marcando, List<Pagamento> aGravar) throws SQLException {
+		int[] linhas = marca.executeBatch();
+		for(int i = 0; i < linhas.length; i++) {
+			if(linhas[i] != 0) aGravar.add(marcando.get(i));
+		}
+		marcando.clear();
+	}
+}
@@ -0,0 +1,51 @@
+package br.com.caelum.leilao.infra.dao;
+
+/*
+ * Uma das "total" partes em que os leiles so divididos pelo id: o leilo
+ * pertence  partio de nmero id % total.
+ */
+public final class Particao {
+
+	private final int numero;
+	private final int total;
+
+	public Particao(int numero, int total) {
+		if(total < 1 || numero < 0 || numero >= total) {
+			throw new IllegalArgumentException("Partio " + numero + " de " + total + " no existe!");
+		}
+		this.numero = numero;
+		this.total = total;
+	}
+
+	public int getNumero() {
+		return numero;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public boolean contem(int id) {
+		return Math.floorMod(id, total) == numero;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * numero + total;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		Particao other = (Particao) obj;
+		return numero == other.numero && total == other.total;
+	}
+
+	@Override
+	public String toString() {
+		return numero + "/" + total;
+	}
+}
@@ -0,0 +1,121 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Pool simples: abre "minimo" conexes logo de cara, nunca passa de "maximo"
+ * conexes emprestadas e espera no mximo "esperaMaxima" milissegundos por uma
+ * conexo livre. Conexes que deixaram de ser vlidas so trocadas por novas.
+ * 
+ * Para no pagar uma ida ao banco a cada emprstimo, s  validada a conexo
+ * que ficou parada no pool por mais que o tempo configurado (30 segundos, por
+ * padro). Devolver uma conexo que no est emprestada  um erro: ela
+ * entraria duas vezes no pool e acabaria com duas threads ao mesmo tempo.
+ */
+public class PoolDeConexoes implements ProvedorDeConexoes {
+
+	private static final int SEGUNDOS_PARA_VALIDAR = 2;
+
+	private static final long OCIOSA_POR_PADRAO = 30000;
+
+	private final String url;
+	private final String usuario;
+	private final String senha;
+	private final long esperaMaxima;
+	private final Semaphore emprestimos;
+	private final LinkedBlockingDeque<ConexaoComCache> livres;
+	private final Set<ConexaoComCache> emprestadas;
+	private volatile long validaOciosasHaMaisDe = TimeUnit.MILLISECONDS.toNanos(OCIOSA_POR_PADRAO);
+
+	public PoolDeConexoes(String url, String usuario, String senha, int minimo, int maximo, long esperaMaxima) {
+		if(minimo < 0 || maximo < 1 || minimo > maximo) {
+			throw new IllegalArgumentException("Tamanhos invlidos para o pool: " + minimo + " a " + maximo);
+		}
+		this.url = url;
+		this.usuario = usuario;
+		this.senha = senha;
+		this.esperaMaxima = esperaMaxima;
+		this.emprestimos = new Semaphore(maximo, true);
+		this.livres = new LinkedBlockingDeque<ConexaoComCache>();
+		this.emprestadas = Collections.newSetFromMap(new ConcurrentHashMap<ConexaoComCache, Boolean>());
+
+		for(int i = 0; i < minimo; i++) livres.add(abre());
+	}
+
+	/*
+	 * Conexes paradas no pool h mais que "millis" milissegundos so validadas
+	 * antes de serem emprestadas; com zero, todas so validadas.
+	 */
+	public PoolDeConexoes validandoOciosasHaMaisDe(long millis) {
+		this.validaOciosasHaMaisDe = TimeUnit.MILLISECONDS.toNanos(millis);
+		return this;
+	}
+
+	public ConexaoComCache obtem() {
+		try {
+			if(!emprestimos.tryAcquire(esperaMaxima, TimeUnit.MILLISECONDS)) {
+				throw new RuntimeException("Nenhuma conexo livre depois de " + esperaMaxima + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		try {
+			ConexaoComCache conexao;
+			while((conexao = livres.pollFirst()) != null) {
+				if(!precisaValidar(conexao) || conexao.isValida(SEGUNDOS_PARA_VALIDAR)) return empresta(conexao);
+				conexao.fecha();
+			}
+			return empresta(abre());
+		} catch (RuntimeException e) {
+			emprestimos.release();
+			throw e;
+		}
+	}
+
+	public void devolve(ConexaoComCache conexao) {
+		if(!emprestadas.remove(conexao)) {
+			throw new IllegalStateException("Conexo devolvida ao pool sem estar emprestada");
+		}
+		conexao.marcaLivre(System.nanoTime());
+		livres.addFirst(conexao);
+		emprestimos.release();
+	}
+
+	public void fecha() {
+		ConexaoComCache conexao;
+		while((conexao = livres.pollFirst()) != null) conexao.fecha();
+	}
+
+	protected Connection novaConexao() throws SQLException {
+		return DriverManager.getConnection(url, usuario, senha);
+	}
+
+	private boolean precisaValidar(ConexaoComCache conexao) {
+		return System.nanoTime() - conexao.getLivreDesde() >= validaOciosasHaMaisDe;
+	}
+
+	private ConexaoComCache empresta(ConexaoComCache conexao) {
+		emprestadas.add(conexao);
+		return conexao;
+	}
+
+	private ConexaoComCache abre() {
+		try {
+			ConexaoComCache conexao = new ConexaoComCache(novaConexao());
+			conexao.marcaLivre(System.nanoTime());
+			return conexao;
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
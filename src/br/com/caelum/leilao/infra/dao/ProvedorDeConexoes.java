@@ -0,0 +1,7 @@
+package br.com.caelum.leilao.infra.dao;
+
+public interface ProvedorDeConexoes {
+	ConexaoComCache obtem();
+
+	void devolve(ConexaoComCache conexao);
+}
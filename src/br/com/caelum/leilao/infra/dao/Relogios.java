@@ -0,0 +1,21 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/*
+ * O Relogio continua devolvendo Calendar. Quem j trabalha com java.time
+ * converte o hoje() aqui, uma vez por execuo, no mesmo instante e fuso.
+ */
+public final class Relogios {
+
+	private Relogios() {
+	}
+
+	public static ZonedDateTime agora(Relogio relogio) {
+		Calendar hoje = relogio.hoje();
+		if(hoje instanceof GregorianCalendar) return ((GregorianCalendar) hoje).toZonedDateTime();
+		return ZonedDateTime.ofInstant(hoje.toInstant(), hoje.getTimeZone().toZoneId());
+	}
+}
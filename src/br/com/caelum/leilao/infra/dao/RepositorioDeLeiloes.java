@@ -1,5 +1,7 @@
 package br.com.caelum.leilao.infra.dao;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import br.com.caelum.leilao.dominio.Leilao;
@@ -7,9 +9,62 @@ import br.com.caelum.leilao.dominio.Leilao;
 public interface RepositorioDeLeiloes {
 	void salva(Leilao leilao);
 
+	void salvaTodos(Collection<Leilao> leiloes);
+
+	/*
+	 * O leilo do id informado, ou null se no existir.
+	 */
+	Leilao porId(int id);
+
 	List<Leilao> encerrados();
 
 	List<Leilao> correntes();
 
+	/*
+	 * Variantes que entregam um leilo por vez, sem carregar todos na memria.
+	 * O iterator pode estar preso a recursos do repositrio; quem o percorre
+	 * deve liber-lo com Cursores.fecha() num finally.
+	 */
+	Iterable<Leilao> percorreEncerrados();
+
+	Iterable<Leilao> percorreCorrentes();
+
+	/*
+	 * Leiles encerrados que ainda no receberam pagamento. Quem grava o
+	 * pagamento marca o leilo como pago na mesma transao, ento cada
+	 * execuo s enxerga o que foi encerrado desde a anterior.
+	 */
+	Iterable<Leilao> percorreEncerradosSemPagamento();
+
+	/*
+	 * As mesmas consultas, restritas aos leiles de uma partio.
+	 */
+	Iterable<Leilao> percorreEncerrados(Particao particao);
+
+	Iterable<Leilao> percorreEncerradosSemPagamento(Particao particao);
+
+	Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia, Particao particao);
+
+	/*
+	 * Leiles ainda no encerrados que comearam at o dia informado, inclusive.
+	 */
+	Iterable<Leilao> correntesIniciadosAntesDe(LocalDate dia);
+
 	void atualiza(Leilao leilao);
+
+	/*
+	 * Grava apenas o encerramento do leilo, sem reescrever as demais colunas.
+	 */
+	void atualizaEncerramento(Leilao leilao);
+
+	/*
+	 * Encerra todos os leiles dos ids informados de uma vez.
+	 */
+	void encerraTodos(Collection<Integer> ids);
+
+	/*
+	 * Encerra os leiles e registra a notificao de encerramento de cada um na
+	 * caixa de sada, tudo na mesma transao.
+	 */
+	void encerraNotificando(Collection<Leilao> leiloes);
 }
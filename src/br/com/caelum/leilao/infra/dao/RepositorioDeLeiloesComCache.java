@@ -0,0 +1,436 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.caelum.leilao.dominio.Leilao;
+
+/*
+ * Decorador que guarda em memria os leiles buscados por id e o resultado
+ * das consultas (read-through).
+ * 
+ * O cache  LRU, limitado pelo peso dos leiles guardados (1 + a quantidade
+ * de lances de cada um), e cada entrada expira depois de ttlEmMillis; entradas
+ * expiradas contam como despejos. O peso  recalculado sempre que o leilo 
+ * atualizado, inclusive quando a atualizao  descarregada.
+ * 
+ * Uma consulta percorrida  guardada s se foi percorrida at o fim, se
+ * coube no peso mximo e se nada foi gravado por este decorador enquanto
+ * isso; qualquer gravao descarta todas as consultas guardadas. As consultas
+ * de leiles sem pagamento no so guardadas: o pagamento  gravado pelo
+ * repositrio de pagamentos, que este decorador no enxerga.
+ * 
+ * Por padro, atualiza()  repassado na hora (write-through). Com
+ * comEscritaAgrupada(), as atualizaes ficam pendentes e vrias atualizaes
+ * do mesmo leilo viram uma s quando descarrega()  chamado. Antes de
+ * qualquer consulta ou encerramento no repositrio decorado, as pendncias
+ * so descarregadas, para que nenhuma atualizao antiga desfaa um
+ * encerramento.
+ */
+public class RepositorioDeLeiloesComCache implements RepositorioDeLeiloes {
+
+	/*
+	 * Um leilo, guardado pelo id, ou o resultado de uma consulta, guardado
+	 * pelo nome dela.
+	 */
+	private static class Entrada {
+		private final List<Leilao> leiloes;
+		private int peso;
+		private final long expiraEm;
+
+		Entrada(List<Leilao> leiloes, int peso, long expiraEm) {
+			this.leiloes = leiloes;
+			this.peso = peso;
+			this.expiraEm = expiraEm;
+		}
+	}
+
+	/*
+	 * Entrega os leiles da consulta um por vez e guarda o resultado quando
+	 * ela chega ao fim.
+	 */
+	private class Guardando implements Iterator<Leilao>, Closeable {
+		private final String consulta;
+		private final Iterator<Leilao> cursor;
+		private final long versaoInicial;
+		private List<Leilao> lidos = new ArrayList<Leilao>();
+		private int peso;
+
+		Guardando(String consulta, Iterator<Leilao> cursor, long versaoInicial) {
+			this.consulta = consulta;
+			this.cursor = cursor;
+			this.versaoInicial = versaoInicial;
+		}
+
+		public boolean hasNext() {
+			if(cursor.hasNext()) return true;
+			if(lidos != null) {
+				guardaConsulta(consulta, lidos, peso, versaoInicial);
+				lidos = null;
+			}
+			return false;
+		}
+
+		public Leilao next() {
+			Leilao leilao = cursor.next();
+			if(lidos != null) {
+				peso += pesoDe(leilao);
+				if(peso > pesoMaximo) lidos = null;
+				else lidos.add(leilao);
+			}
+			return leilao;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			Cursores.fecha(cursor);
+		}
+	}
+
+	private final RepositorioDeLeiloes repositorio;
+	private final int pesoMaximo;
+	private final long ttlEmMillis;
+	private final Relogio relogio;
+	/* chave: o id (Integer) do leilo ou o nome (String) da consulta */
+	private final LinkedHashMap<Object, Entrada> cache = new LinkedHashMap<Object, Entrada>(16, 0.75f, true);
+	private final Set<String> consultas = new HashSet<String>();
+	private final Map<Integer, Leilao> pendentes = new LinkedHashMap<Integer, Leilao>();
+	private boolean escritaAgrupada;
+	private int pesoAtual;
+	/* muda a cada gravao, para que uma consulta antiga no seja guardada */
+	private long versao;
+	private long acertos;
+	private long faltas;
+	private long despejos;
+
+	public RepositorioDeLeiloesComCache(RepositorioDeLeiloes repositorio, int pesoMaximo, long ttlEmMillis) {
+		this(repositorio, pesoMaximo, ttlEmMillis, new RelogioDoSistema());
+	}
+
+	public RepositorioDeLeiloesComCache(RepositorioDeLeiloes repositorio, int pesoMaximo, long ttlEmMillis, Relogio relogio) {
+		if(pesoMaximo < 1) {
+			throw new IllegalArgumentException("O cache precisa comportar ao menos um leilo!");
+		}
+		this.repositorio = repositorio;
+		this.pesoMaximo = pesoMaximo;
+		this.ttlEmMillis = ttlEmMillis;
+		this.relogio = relogio;
+	}
+
+	public synchronized RepositorioDeLeiloesComCache comEscritaAgrupada() {
+		this.escritaAgrupada = true;
+		return this;
+	}
+
+	public Leilao porId(int id) {
+		synchronized (this) {
+			Entrada entrada = valida(id);
+			if(entrada != null) {
+				acertos++;
+				return entrada.leiloes.get(0);
+			}
+			
+			Leilao pendente = pendentes.get(id);
+			if(pendente != null) {
+				acertos++;
+				return guarda(pendente);
+			}
+			faltas++;
+		}
+		
+		Leilao leilao = repositorio.porId(id);
+		if(leilao == null) return null;
+		synchronized (this) {
+			return guarda(leilao);
+		}
+	}
+
+	public void salva(Leilao leilao) {
+		repositorio.salva(leilao);
+		synchronized (this) {
+			descartaConsultas();
+			guarda(leilao);
+		}
+	}
+
+	public void salvaTodos(Collection<Leilao> leiloes) {
+		repositorio.salvaTodos(leiloes);
+		synchronized (this) {
+			descartaConsultas();
+			for(Leilao leilao : leiloes) guarda(leilao);
+		}
+	}
+
+	public List<Leilao> encerrados() {
+		return lista("encerrados", new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.encerrados();
+			}
+		});
+	}
+
+	public List<Leilao> correntes() {
+		return lista("correntes", new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.correntes();
+			}
+		});
+	}
+
+	public Iterable<Leilao> percorreEncerrados() {
+		return percorre("encerrados", new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.percorreEncerrados();
+			}
+		});
+	}
+
+	public Iterable<Leilao> percorreCorrentes() {
+		return percorre("correntes", new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.percorreCorrentes();
+			}
+		});
+	}
+
+	public Iterable<Leilao> percorreEncerradosSemPagamento() {
+		descarrega();
+		return repositorio.percorreEncerradosSemPagamento();
+	}
+
+	public Iterable<Leilao> correntesIniciadosAntesDe(final LocalDate dia) {
+		return percorre("correntes at " + dia, new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.correntesIniciadosAntesDe(dia);
+			}
+		});
+	}
+
+	public Iterable<Leilao> percorreEncerrados(final Particao particao) {
+		return percorre("encerrados de " + particao, new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.percorreEncerrados(particao);
+			}
+		});
+	}
+
+	public Iterable<Leilao> percorreEncerradosSemPagamento(Particao particao) {
+		descarrega();
+		return repositorio.percorreEncerradosSemPagamento(particao);
+	}
+
+	public Iterable<Leilao> correntesIniciadosAntesDe(final LocalDate dia, final Particao particao) {
+		return percorre("correntes at " + dia + " de " + particao, new Consulta() {
+			public Iterable<Leilao> executa() {
+				return repositorio.correntesIniciadosAntesDe(dia, particao);
+			}
+		});
+	}
+
+	private interface Consulta {
+		Iterable<Leilao> executa();
+	}
+
+	private List<Leilao> lista(String nome, Consulta consulta) {
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for(Leilao leilao : percorre(nome, consulta)) leiloes.add(leilao);
+		return leiloes;
+	}
+
+	private Iterable<Leilao> percorre(final String nome, final Consulta consulta) {
+		descarrega();
+		final long versaoInicial;
+		synchronized (this) {
+			Entrada entrada = valida(nome);
+			if(entrada != null) {
+				acertos++;
+				return entrada.leiloes;
+			}
+			faltas++;
+			versaoInicial = versao;
+		}
+		return new Iterable<Leilao>() {
+			public Iterator<Leilao> iterator() {
+				return new Guardando(nome, consulta.executa().iterator(), versaoInicial);
+			}
+		};
+	}
+
+	public void atualiza(Leilao leilao) {
+		synchronized (this) {
+			descartaConsultas();
+			guarda(leilao);
+			if(escritaAgrupada) {
+				pendentes.put(leilao.getId(), leilao);
+				return;
+			}
+		}
+		repositorio.atualiza(leilao);
+	}
+
+	/*
+	 * Grava no repositrio decorado, uma vez por leilo, as atualizaes
+	 * pendentes. Se uma gravao falha, ela e as que ainda no foram gravadas
+	 * voltam a ficar pendentes (a no ser que o leilo j tenha uma pendncia
+	 * mais nova) e o erro sobe para quem chamou.
+	 */
+	public void descarrega() {
+		List<Leilao> aGravar;
+		synchronized (this) {
+			if(pendentes.isEmpty()) return;
+			aGravar = new ArrayList<Leilao>(pendentes.values());
+			pendentes.clear();
+		}
+		int gravados = 0;
+		try {
+			for(Leilao leilao : aGravar) {
+				repositorio.atualiza(leilao);
+				gravados++;
+			}
+		} finally {
+			synchronized (this) {
+				for(int i = 0; i < gravados; i++) repesa(aGravar.get(i));
+				for(int i = gravados; i < aGravar.size(); i++) {
+					Leilao leilao = aGravar.get(i);
+					if(!pendentes.containsKey(leilao.getId())) pendentes.put(leilao.getId(), leilao);
+				}
+			}
+		}
+	}
+
+	public void atualizaEncerramento(Leilao leilao) {
+		descarrega();
+		repositorio.atualizaEncerramento(leilao);
+		synchronized (this) {
+			descartaConsultas();
+			remove(leilao.getId());
+		}
+	}
+
+	public void encerraTodos(Collection<Integer> ids) {
+		descarrega();
+		repositorio.encerraTodos(ids);
+		synchronized (this) {
+			descartaConsultas();
+			for(Integer id : ids) remove(id);
+		}
+	}
+
+	public void encerraNotificando(Collection<Leilao> leiloes) {
+		descarrega();
+		repositorio.encerraNotificando(leiloes);
+		synchronized (this) {
+			descartaConsultas();
+			for(Leilao leilao : leiloes) remove(leilao.getId());
+		}
+	}
+
+	/*
+	 * A entrada da chave, se ainda no expirou. Acertos e faltas so contados
+	 * por quem chama, que pode ainda achar o leilo entre as pendncias.
+	 */
+	private Entrada valida(Object chave) {
+		Entrada entrada = cache.get(chave);
+		if(entrada != null && entrada.expiraEm > agora()) return entrada;
+		if(entrada != null) {
+			remove(chave);
+			despejos++;
+		}
+		return null;
+	}
+
+	private synchronized void guardaConsulta(String nome, List<Leilao> leiloes, int peso, long versaoInicial) {
+		if(versao != versaoInicial) return;
+		consultas.add(nome);
+		coloca(nome, new Entrada(Collections.unmodifiableList(leiloes), peso, agora() + ttlEmMillis));
+	}
+
+	private void descartaConsultas() {
+		versao++;
+		for(String nome : consultas) remove(nome);
+		consultas.clear();
+	}
+
+	private Leilao guarda(Leilao leilao) {
+		coloca(leilao.getId(), new Entrada(Collections.singletonList(leilao), pesoDe(leilao), agora() + ttlEmMillis));
+		return leilao;
+	}
+
+	/*
+	 * Recalcula o peso do leilo guardado, que pode ter recebido lances desde
+	 * que entrou no cache, sem mudar a validade dele.
+	 */
+	private void repesa(Leilao leilao) {
+		Entrada entrada = cache.get(leilao.getId());
+		if(entrada == null || entrada.leiloes.get(0) != leilao) return;
+		int peso = pesoDe(leilao);
+		pesoAtual += peso - entrada.peso;
+		entrada.peso = peso;
+		if(peso > pesoMaximo) remove(leilao.getId());
+		else despejaAte(entrada);
+	}
+
+	private void coloca(Object chave, Entrada entrada) {
+		remove(chave);
+		if(entrada.peso > pesoMaximo) return;
+		cache.put(chave, entrada);
+		pesoAtual += entrada.peso;
+		despejaAte(entrada);
+	}
+
+	/*
+	 * Despeja as entradas usadas h mais tempo at o peso caber, sem despejar
+	 * a entrada informada.
+	 */
+	private void despejaAte(Entrada preservada) {
+		Iterator<Entrada> maisAntigos = cache.values().iterator();
+		while(pesoAtual > pesoMaximo && maisAntigos.hasNext()) {
+			Entrada maisAntiga = maisAntigos.next();
+			if(maisAntiga == preservada) continue;
+			maisAntigos.remove();
+			pesoAtual -= maisAntiga.peso;
+			despejos++;
+		}
+	}
+
+	private void remove(Object chave) {
+		Entrada entrada = cache.remove(chave);
+		if(entrada != null) pesoAtual -= entrada.peso;
+	}
+
+	private static int pesoDe(Leilao leilao) {
+		return 1 + leilao.getQuantidadeDeLances();
+	}
+
+	private long agora() {
+		return relogio.hoje().getTimeInMillis();
+	}
+
+	public synchronized long getAcertos() {
+		return acertos;
+	}
+
+	public synchronized long getFaltas() {
+		return faltas;
+	}
+
+	public synchronized long getDespejos() {
+		return despejos;
+	}
+
+	public synchronized int getPesoAtual() {
+		return pesoAtual;
+	}
+}
@@ -0,0 +1,19 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import br.com.caelum.leilao.dominio.Notificacao;
+
+public interface RepositorioDeNotificacoes {
+	/*
+	 * As notificaes ainda no enviadas e com menos de "tentativasMaximas"
+	 * falhas, em ordem de id, a partir da seguinte a "depoisDoId". Cada uma
+	 * traz o leilo completo, com os lances, pronto para o carteiro.
+	 */
+	List<Notificacao> pendentes(int depoisDoId, int quantidade, int tentativasMaximas);
+
+	void marcaEnviadas(Collection<Notificacao> notificacoes);
+
+	void registraFalha(Notificacao notificacao);
+}
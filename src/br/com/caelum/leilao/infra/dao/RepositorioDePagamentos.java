@@ -1,7 +1,11 @@
 package br.com.caelum.leilao.infra.dao;
 
+import java.util.List;
+
 import br.com.caelum.leilao.dominio.Pagamento;
 
 public interface RepositorioDePagamentos {
 	void salva(Pagamento pagamento);
+
+	void salvaTodos(List<Pagamento> pagamentos);
 }
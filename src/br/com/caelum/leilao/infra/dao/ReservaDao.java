@@ -0,0 +1,90 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/*
+ * Reservas na tabela RESERVA (chave primria TAREFA, TOTAL, PARTICAO), para
+ * workers em processos diferentes. Cada reserva  um nico comando no banco: um
+ * UPDATE condicional que s pega a partio livre, vencida ou do prprio
+ * dono, ou, se a linha ainda no existe, um INSERT que a chave primria
+ * impede de acontecer duas vezes.
+ * 
+ * Os prazos usam o relgio de quem reserva; os relgios dos workers precisam
+ * estar sincronizados com folga menor que a durao das reservas.
+ * 
+ * A reserva no  renovada sozinha: o dono precisa terminar a partio antes
+ * que ela vena, ou chamar reserva() de novo para estender o prazo.
+ */
+public class ReservaDao implements ReservasDeParticoes {
+
+	private final ProvedorDeConexoes conexoes;
+	private final Relogio relogio;
+
+	public ReservaDao(Connection conexao) {
+		this(new ConexaoUnica(conexao));
+	}
+
+	public ReservaDao(ProvedorDeConexoes conexoes) {
+		this(conexoes, new RelogioDoSistema());
+	}
+
+	public ReservaDao(ProvedorDeConexoes conexoes, Relogio relogio) {
+		this.conexoes = conexoes;
+		this.relogio = relogio;
+	}
+
+	public boolean reserva(String tarefa, Particao particao, String dono, long duracaoEmMillis) {
+		long agora = relogio.hoje().getTimeInMillis();
+		
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement renova = conexao.prepara("UPDATE RESERVA SET DONO = ?, EXPIRA_EM = ? "
+					+ "WHERE TAREFA = ? AND TOTAL = ? AND PARTICAO = ? AND (DONO = ? OR EXPIRA_EM < ?);");
+			renova.setString(1, dono);
+			renova.setLong(2, agora + duracaoEmMillis);
+			renova.setString(3, tarefa);
+			renova.setInt(4, particao.getTotal());
+			renova.setInt(5, particao.getNumero());
+			renova.setString(6, dono);
+			renova.setLong(7, agora);
+			if(renova.executeUpdate() == 1) return true;
+			
+			PreparedStatement cria = conexao.prepara("INSERT INTO RESERVA (TAREFA, TOTAL, PARTICAO, DONO, EXPIRA_EM) "
+					+ "SELECT ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS "
+					+ "(SELECT 1 FROM RESERVA WHERE TAREFA = ? AND TOTAL = ? AND PARTICAO = ?);");
+			cria.setString(1, tarefa);
+			cria.setInt(2, particao.getTotal());
+			cria.setInt(3, particao.getNumero());
+			cria.setString(4, dono);
+			cria.setLong(5, agora + duracaoEmMillis);
+			cria.setString(6, tarefa);
+			cria.setInt(7, particao.getTotal());
+			cria.setInt(8, particao.getNumero());
+			return cria.executeUpdate() == 1;
+		} catch (SQLException e) {
+			// outro worker criou a reserva entre o UPDATE e o INSERT
+			if(e.getSQLState() != null && e.getSQLState().startsWith("23")) return false;
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+
+	public void libera(String tarefa, Particao particao, String dono) {
+		ConexaoComCache conexao = conexoes.obtem();
+		try {
+			PreparedStatement ps = conexao.prepara("DELETE FROM RESERVA WHERE TAREFA = ? AND TOTAL = ? AND PARTICAO = ? AND DONO = ?;");
+			ps.setString(1, tarefa);
+			ps.setInt(2, particao.getTotal());
+			ps.setInt(3, particao.getNumero());
+			ps.setString(4, dono);
+			ps.execute();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			conexoes.devolve(conexao);
+		}
+	}
+}
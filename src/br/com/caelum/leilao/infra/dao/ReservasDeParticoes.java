@@ -0,0 +1,21 @@
+package br.com.caelum.leilao.infra.dao;
+
+/*
+ * Reservas com prazo de validade, para que dois processos nunca trabalhem na
+ * mesma partio de uma tarefa ao mesmo tempo.
+ */
+public interface ReservasDeParticoes {
+
+	/*
+	 * Reserva a partio para o dono pelos prximos duracaoEmMillis. S
+	 * consegue se a partio estiver livre, se a reserva anterior j tiver
+	 * vencido ou se ela j for do mesmo dono (que assim a renova). A reserva
+	 * nunca  renovada sozinha.
+	 */
+	boolean reserva(String tarefa, Particao particao, String dono, long duracaoEmMillis);
+
+	/*
+	 * Libera a partio, se ela ainda estiver reservada para o dono.
+	 */
+	void libera(String tarefa, Particao particao, String dono);
+}
@@ -0,0 +1,53 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Reservas vlidas apenas dentro desta JVM, para workers que so threads do
+ * mesmo processo.
+ */
+public class ReservasEmMemoria implements ReservasDeParticoes {
+
+	private static class Reserva {
+		private final String dono;
+		private final long expiraEm;
+
+		Reserva(String dono, long expiraEm) {
+			this.dono = dono;
+			this.expiraEm = expiraEm;
+		}
+	}
+
+	private final Map<String, Reserva> reservas = new HashMap<String, Reserva>();
+	private final Relogio relogio;
+
+	public ReservasEmMemoria() {
+		this(new RelogioDoSistema());
+	}
+
+	public ReservasEmMemoria(Relogio relogio) {
+		this.relogio = relogio;
+	}
+
+	public synchronized boolean reserva(String tarefa, Particao particao, String dono, long duracaoEmMillis) {
+		long agora = relogio.hoje().getTimeInMillis();
+		String chave = chave(tarefa, particao);
+		
+		Reserva atual = reservas.get(chave);
+		if(atual != null && !atual.dono.equals(dono) && atual.expiraEm > agora) return false;
+		
+		reservas.put(chave, new Reserva(dono, agora + duracaoEmMillis));
+		return true;
+	}
+
+	public synchronized void libera(String tarefa, Particao particao, String dono) {
+		String chave = chave(tarefa, particao);
+		Reserva atual = reservas.get(chave);
+		if(atual != null && atual.dono.equals(dono)) reservas.remove(chave);
+	}
+
+	private String chave(String tarefa, Particao particao) {
+		return tarefa + "#" + particao;
+	}
+}
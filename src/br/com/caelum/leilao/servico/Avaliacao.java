@@ -0,0 +1,35 @@
+package br.com.caelum.leilao.servico;
+
+import java.util.Collections;
+import java.util.List;
+
+import br.com.caelum.leilao.dominio.Lance;
+
+/*
+ * Resultado imutvel da avaliao de um nico leilo. Pode ser passado entre
+ * threads sem cpia.
+ */
+public final class Avaliacao {
+
+	private final double maiorLance;
+	private final double menorLance;
+	private final List<Lance> maiores;
+
+	Avaliacao(double maiorLance, double menorLance, List<Lance> maiores) {
+		this.maiorLance = maiorLance;
+		this.menorLance = menorLance;
+		this.maiores = Collections.unmodifiableList(maiores);
+	}
+
+	public double getMaiorLance() {
+		return maiorLance;
+	}
+
+	public double getMenorLance() {
+		return menorLance;
+	}
+
+	public List<Lance> getMaiores() {
+		return maiores;
+	}
+}
@@ -1,55 +1,108 @@
 package br.com.caelum.leilao.servico;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
+import br.com.caelum.leilao.dominio.EstatisticasDoLeilao;
 import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.LancesEmColunas;
 import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.MaioresLances;
 
 public class Avaliador {
 
-	private double maiorDeTodos = Double.NEGATIVE_INFINITY;
-	private double menorDeTodos = Double.POSITIVE_INFINITY;
-	private List<Lance> maiores;
+	private final int quantidadeDeMaiores;
+	private volatile Avaliacao ultima;
 
-	public void avalia(Leilao leilao) {
-		
-		if(leilao.getLances().size() == 0) {
+	public Avaliador() {
+		this(3);
+	}
+
+	public Avaliador(int quantidadeDeMaiores) {
+		this.quantidadeDeMaiores = quantidadeDeMaiores;
+	}
+
+	/*
+	 * Uma nica passada pelos lances: maior, menor e os N maiores so
+	 * calculados juntos, sem copiar nem ordenar os lances. A passada, ou a
+	 * leitura das estatsticas, acontece sob a trava do leilo, para no cruzar
+	 * com um propoe() de outra thread.
+	 * 
+	 * Cada chamada comea do zero e devolve o prprio resultado, ento o mesmo
+	 * Avaliador pode ser usado por vrias threads ao mesmo tempo; os getters
+	 * abaixo s refletem a ltima avaliao.
+	 */
+	public Avaliacao avalia(Leilao leilao) {
+		if(leilao.getQuantidadeDeLances() == 0) {
 			throw new RuntimeException("No  possvel avaliar um leilo sem lances!");
 		}
 		
-		for(Lance lance : leilao.getLances()) {
+		Avaliacao avaliacao;
+		synchronized(leilao) {
+			EstatisticasDoLeilao estatisticas = leilao.getEstatisticas();
+			LancesEmColunas colunas = leilao.getLancesEmColunas();
+			if(estatisticas != null && estatisticas.getQuantidadeDeMaiores() >= quantidadeDeMaiores) {
+				avaliacao = avaliaPelas(estatisticas);
+			} else if(colunas != null) {
+				avaliacao = avaliaAs(colunas);
+			} else {
+				avaliacao = avaliaOs(leilao.getLances());
+			}
+		}
+		
+		ultima = avaliacao;
+		return avaliacao;
+	}
+
+	private Avaliacao avaliaOs(List<Lance> lances) {
+		double maiorDeTodos = Double.NEGATIVE_INFINITY;
+		double menorDeTodos = Double.POSITIVE_INFINITY;
+		
+		MaioresLances maioresLances = new MaioresLances(quantidadeDeMaiores);
+		for(Lance lance : lances) {
 			if(lance.getValor() > maiorDeTodos) maiorDeTodos = lance.getValor();
 			if (lance.getValor() < menorDeTodos) menorDeTodos = lance.getValor();
+			maioresLances.considera(lance);
 		}
 		
-		tresMaiores(leilao);
+		return new Avaliacao(maiorDeTodos, menorDeTodos, maioresLances.getLances());
 	}
 
-	private void tresMaiores(Leilao leilao) {
-		maiores = new ArrayList<Lance>(leilao.getLances());
-		Collections.sort(maiores, new Comparator<Lance>() {
+	/*
+	 * A mesma passada, lendo direto das colunas: o MaioresLances guarda s as
+	 * posies dos maiores, e nenhum Lance  montado alm dos N do resultado.
+	 */
+	private Avaliacao avaliaAs(LancesEmColunas colunas) {
+		double maiorDeTodos = Double.NEGATIVE_INFINITY;
+		double menorDeTodos = Double.POSITIVE_INFINITY;
+		
+		MaioresLances maioresLances = new MaioresLances(quantidadeDeMaiores);
+		for(int i = 0; i < colunas.size(); i++) {
+			double valor = colunas.getValor(i);
+			if(valor > maiorDeTodos) maiorDeTodos = valor;
+			if(valor < menorDeTodos) menorDeTodos = valor;
+			maioresLances.considera(colunas, i);
+		}
+		
+		return new Avaliacao(maiorDeTodos, menorDeTodos, maioresLances.getLances(colunas));
+	}
 
-			public int compare(Lance o1, Lance o2) {
-				if(o1.getValor() < o2.getValor()) return 1;
-				if(o1.getValor() > o2.getValor()) return -1;
-				return 0;
-			}
-		});
-		maiores = maiores.subList(0, maiores.size() > 3 ? 3 : maiores.size());
+	private Avaliacao avaliaPelas(EstatisticasDoLeilao estatisticas) {
+		List<Lance> todosOsMaiores = estatisticas.getMaiores();
+		List<Lance> maiores = todosOsMaiores.subList(0, Math.min(quantidadeDeMaiores, todosOsMaiores.size()));
+		
+		return new Avaliacao(estatisticas.getMaiorLance(), estatisticas.getMenorLance(), new ArrayList<Lance>(maiores));
 	}
 
 	public List<Lance> getTresMaiores() {
-		return maiores;
+		return ultima.getMaiores();
 	}
 	
 	public double getMaiorLance() {
-		return maiorDeTodos;
+		return ultima.getMaiorLance();
 	}
 	
 	public double getMenorLance() {
-		return menorDeTodos;
+		return ultima.getMenorLance();
 	}
 }
@@ -0,0 +1,11 @@
+package br.com.caelum.leilao.servico;
+
+import java.time.LocalDate;
+
+public interface CalendarioDeDiasUteis {
+
+	/*
+	 * O prprio dia, se for dia til; seno, o primeiro dia til depois dele.
+	 */
+	LocalDate proximoDiaUtil(LocalDate dia);
+}
@@ -0,0 +1,101 @@
+package br.com.caelum.leilao.servico;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Sbados, domingos e os feriados informados no so dias teis.
+ * 
+ * Para cada ano consultado  montado, uma nica vez, um BitSet com um bit por
+ * dia do ano ligado nos dias no teis. O prximo dia til passa a ser um
+ * nextClearBit() a partir do dia informado, em vez de testar dia a dia.
+ */
+public class CalendarioDeFeriados implements CalendarioDeDiasUteis {
+
+	private final Set<LocalDate> feriados;
+	private final ConcurrentMap<Integer, BitSet> naoUteisPorAno = new ConcurrentHashMap<Integer, BitSet>();
+
+	public CalendarioDeFeriados() {
+		this(Collections.<LocalDate> emptySet());
+	}
+
+	public CalendarioDeFeriados(Collection<LocalDate> feriados) {
+		this.feriados = new HashSet<LocalDate>(feriados);
+	}
+
+	/*
+	 * Um feriado por linha, no formato AAAA-MM-DD. Linhas em branco e linhas
+	 * comeando com # so ignoradas.
+	 */
+	public static CalendarioDeFeriados doArquivo(String caminho) {
+		try {
+			List<LocalDate> feriados = new ArrayList<LocalDate>();
+			for (String linha : Files.readAllLines(Paths.get(caminho), StandardCharsets.UTF_8)) {
+				linha = linha.trim();
+				if (linha.isEmpty() || linha.startsWith("#")) continue;
+				feriados.add(LocalDate.parse(linha));
+			}
+			return new CalendarioDeFeriados(feriados);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public LocalDate proximoDiaUtil(LocalDate dia) {
+		return dia.plusDays(diasAteOProximoUtil(dia));
+	}
+
+	private int diasAteOProximoUtil(LocalDate dia) {
+		int ano = dia.getYear();
+		int indice = dia.getDayOfYear() - 1;
+		int dias = 0;
+		
+		while (true) {
+			int diasNoAno = Year.of(ano).length();
+			int util = naoUteisDe(ano).nextClearBit(indice);
+			if (util < diasNoAno) return dias + util - indice;
+			
+			dias += diasNoAno - indice;
+			ano++;
+			indice = 0;
+		}
+	}
+
+	private BitSet naoUteisDe(int ano) {
+		BitSet naoUteis = naoUteisPorAno.get(ano);
+		if (naoUteis == null) {
+			naoUteis = calculaNaoUteis(ano);
+			BitSet jaCalculado = naoUteisPorAno.putIfAbsent(ano, naoUteis);
+			if (jaCalculado != null) naoUteis = jaCalculado;
+		}
+		return naoUteis;
+	}
+
+	private BitSet calculaNaoUteis(int ano) {
+		int diasNoAno = Year.of(ano).length();
+		BitSet naoUteis = new BitSet(diasNoAno);
+		
+		LocalDate dia = LocalDate.of(ano, 1, 1);
+		for (int i = 0; i < diasNoAno; i++, dia = dia.plusDays(1)) {
+			DayOfWeek diaDaSemana = dia.getDayOfWeek();
+			if (diaDaSemana == DayOfWeek.SATURDAY || diaDaSemana == DayOfWeek.SUNDAY || feriados.contains(dia)) {
+				naoUteis.set(i);
+			}
+		}
+		return naoUteis;
+	}
+}
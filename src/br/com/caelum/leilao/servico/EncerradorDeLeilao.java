@@ -1,56 +1,283 @@
 package br.com.caelum.leilao.servico;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.infra.dao.Cursores;
 import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.Particao;
+import br.com.caelum.leilao.infra.dao.Relogio;
+import br.com.caelum.leilao.infra.dao.RelogioDoSistema;
+import br.com.caelum.leilao.infra.dao.Relogios;
 import br.com.caelum.leilao.infra.dao.RepositorioDeLeiloes;
+import br.com.caelum.leilao.infra.dao.ReservasDeParticoes;
 
 public class EncerradorDeLeilao {
 
-	private int total = 0;
+	private final AtomicInteger total = new AtomicInteger();
 	private RepositorioDeLeiloes dao;
 	private EnviadorDeEmail carteiro;
+	private Relogio relogio;
+	private ExecutorService executor;
+	private int maximoEmAndamento;
+	private int tamanhoDoLote;
+	private boolean comCaixaDeSaida;
+	private Particionamento particionamento;
 
 	public EncerradorDeLeilao(RepositorioDeLeiloes dao, EnviadorDeEmail carteiro) {
+		this(dao, carteiro, new RelogioDoSistema());
+	}
+
+	public EncerradorDeLeilao(RepositorioDeLeiloes dao, EnviadorDeEmail carteiro, Relogio relogio) {
 		this.dao = dao;
 		this.carteiro = carteiro;
+		this.relogio = relogio;
+	}
+
+	/*
+	 * Atualiza e notifica os leiles no executor informado, com no mximo
+	 * "maximoEmAndamento" lotes sendo processados ao mesmo tempo. O encerra()
+	 * s retorna quando todos terminarem.
+	 */
+	public EncerradorDeLeilao emParalelo(ExecutorService executor, int maximoEmAndamento) {
+		if(maximoEmAndamento < 1) {
+			throw new IllegalArgumentException(" preciso permitir ao menos um leilo em andamento!");
+		}
+		this.executor = executor;
+		this.maximoEmAndamento = maximoEmAndamento;
+		return this;
+	}
+
+	/*
+	 * Em vez de um dao.atualiza() por leilo, encerra os leiles no banco em
+	 * lotes, com um nico dao.encerraTodos() por lote. Se o lote falhar, cada
+	 * leilo  gravado sozinho (s a coluna de encerramento), para que um
+	 * leilo problemtico no impea o encerramento dos outros.
+	 */
+	public EncerradorDeLeilao emLotesDe(int tamanhoDoLote) {
+		if(tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("O lote precisa ter ao menos um leilo!");
+		}
+		this.tamanhoDoLote = tamanhoDoLote;
+		return this;
+	}
+
+	/*
+	 * Em vez de enviar o e-mail na hora, registra a notificao na caixa de
+	 * sada junto com o encerramento, na mesma transao. Os e-mails so
+	 * enviados depois, pelo RetransmissorDeNotificacoes.
+	 */
+	public EncerradorDeLeilao comCaixaDeSaida() {
+		this.comCaixaDeSaida = true;
+		return this;
+	}
+
+	/*
+	 * Divide os leiles em "particoes" parties pelo id e s processa as que
+	 * conseguir reservar, uma de cada vez. Vrios encerradores (threads ou
+	 * processos) podem rodar juntos sem que dois peguem a mesma partio. A
+	 * reserva  renovada antes de cada lote, ento a durao precisa cobrir s
+	 * um lote.
+	 */
+	public EncerradorDeLeilao emParticoes(ReservasDeParticoes reservas, int particoes, String dono, long duracaoDaReservaEmMillis) {
+		this.particionamento = new Particionamento("encerramento", reservas, particoes, dono, duracaoDaReservaEmMillis);
+		return this;
 	}
 
 	public void encerra() {
-		List<Leilao> todosLeiloesCorrentes = dao.correntes();
+		final Agora agora = new Agora(Relogios.agora(relogio));
+		if (particionamento == null) {
+			encerra(dao.correntesIniciadosAntesDe(agora.limite), agora, null);
+			return;
+		}
+		
+		particionamento.processa(new Particionamento.Trabalho() {
+			public void executa(Particao particao, Particionamento.Reserva reserva) {
+				encerra(dao.correntesIniciadosAntesDe(agora.limite, particao), agora, reserva);
+			}
+		});
+	}
 
-		for (Leilao leilao : todosLeiloesCorrentes) {
-			try {
-				if (comecouSemanaPassada(leilao)) {
+	private void encerra(Iterable<Leilao> candidatos, Agora agora, Particionamento.Reserva reserva) {
+		Semaphore vagas = executor == null ? null : new Semaphore(maximoEmAndamento);
+		int leiloesPorLote = Math.max(1, tamanhoDoLote);
+		
+		Iterator<Leilao> cursor = candidatos.iterator();
+		try {
+			List<Leilao> lote = new ArrayList<Leilao>(leiloesPorLote);
+			while (cursor.hasNext()) {
+				Leilao leilao = cursor.next();
+				try {
+					if (!comecouSemanaPassada(leilao, agora)) continue;
+				} catch (Exception ex) {
+					continue;
+				}
+				
+				lote.add(leilao);
+				if (lote.size() == leiloesPorLote) {
+					processa(lote, vagas, reserva);
+					lote = new ArrayList<Leilao>(leiloesPorLote);
+				}
+			}
+			if (!lote.isEmpty()) processa(lote, vagas, reserva);
+		} finally {
+			Cursores.fecha(cursor);
+			if (vagas != null) {
+				// espera os lotes que ainda esto em andamento
+				vagas.acquireUninterruptibly(maximoEmAndamento);
+				vagas.release(maximoEmAndamento);
+			}
+		}
+	}
+
+	/*
+	 * Com parties, a reserva  renovada logo antes de o lote comear.
+	 */
+	private void processa(final List<Leilao> lote, final Semaphore vagas, Particionamento.Reserva reserva) {
+		if (vagas == null) {
+			if (reserva != null) reserva.renova();
+			encerraLote(lote);
+			return;
+		}
+		
+		vagas.acquireUninterruptibly();
+		try {
+			if (reserva != null) reserva.renova();
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						encerraLote(lote);
+					} finally {
+						vagas.release();
+					}
+				}
+			});
+		} catch (RuntimeException ex) {
+			// lote rejeitado pelo executor ou reserva perdida
+			vagas.release();
+			throw ex;
+		}
+	}
+
+	private void encerraLote(List<Leilao> lote) {
+		if (comCaixaDeSaida) {
+			encerraNotificando(lote);
+			return;
+		}
+		
+		if (tamanhoDoLote == 0) {
+			for (Leilao leilao : lote) {
+				try {
 					leilao.encerra();
-					total++;
+					total.incrementAndGet();
 					dao.atualiza(leilao);
 					carteiro.envia(leilao);
+				} catch (Exception ex) {
+					// lana exceo
+				}
+			}
+			return;
+		}
+		
+		List<Integer> ids = new ArrayList<Integer>(lote.size());
+		for (Leilao leilao : lote) {
+			leilao.encerra();
+			total.incrementAndGet();
+			ids.add(leilao.getId());
+		}
+		
+		List<Leilao> gravados = lote;
+		try {
+			dao.encerraTodos(ids);
+		} catch (Exception ex) {
+			gravados = new ArrayList<Leilao>(lote.size());
+			for (Leilao leilao : lote) {
+				try {
+					dao.atualizaEncerramento(leilao);
+					gravados.add(leilao);
+				} catch (Exception ex2) {
+					// lana exceo
 				}
+			}
+		}
+		
+		for (Leilao leilao : gravados) {
+			try {
+				carteiro.envia(leilao);
 			} catch (Exception ex) {
 				// lana exceo
 			}
 		}
 	}
 
-	private boolean comecouSemanaPassada(Leilao leilao) {
-		return diasEntre(leilao.getData(), Calendar.getInstance()) >= 7;
+	private void encerraNotificando(List<Leilao> lote) {
+		for (Leilao leilao : lote) {
+			leilao.encerra();
+			total.incrementAndGet();
+		}
+		
+		try {
+			dao.encerraNotificando(lote);
+		} catch (Exception ex) {
+			if (lote.size() == 1) return;
+			for (Leilao leilao : lote) {
+				try {
+					dao.encerraNotificando(Collections.singletonList(leilao));
+				} catch (Exception ex2) {
+					// lana exceo
+				}
+			}
+		}
+	}
+
+	/*
+	 * Equivale a contar os dias, um a um, do incio do leilo at agora e ver se
+	 * deu 7 ou mais: basta comparar os dias desde a poca (epoch day) e, quando
+	 * a diferena  de exatamente 6 dias, o horrio. Como a comparao  feita
+	 * no horrio local, a mudana de horrio de vero no altera o resultado.
+	 */
+	private boolean comecouSemanaPassada(Leilao leilao, Agora agora) {
+		LocalDateTime inicio = agora.noMesmoFuso(leilao.getInstante());
+		long dias = agora.dia - inicio.toLocalDate().toEpochDay();
+		if (dias != 6) return dias >= 7;
+		return inicio.toLocalTime().isBefore(agora.dataHora.toLocalTime());
 	}
 
-	private int diasEntre(Calendar inicio, Calendar fim) {
-		Calendar data = (Calendar) inicio.clone();
-		int diasNoIntervalo = 0;
-		while (data.before(fim)) {
-			data.add(Calendar.DAY_OF_MONTH, 1);
-			diasNoIntervalo++;
+	/*
+	 * O "agora" de uma execuo do encerra(), lido uma nica vez do relgio.
+	 * Leiles que comearam depois do limite (6 dias atrs) nem precisam ser
+	 * carregados do repositrio.
+	 */
+	private static class Agora {
+		private final ZoneId fuso;
+		private final LocalDateTime dataHora;
+		private final long dia;
+		private final LocalDate limite;
+
+		Agora(ZonedDateTime hoje) {
+			this.fuso = hoje.getZone();
+			this.dataHora = hoje.toLocalDateTime();
+			this.dia = dataHora.toLocalDate().toEpochDay();
+			this.limite = dataHora.toLocalDate().minusDays(6);
 		}
 
-		return diasNoIntervalo;
+		LocalDateTime noMesmoFuso(Instant data) {
+			return LocalDateTime.ofInstant(data, fuso);
+		}
 	}
 
 	public int getTotalEncerrados() {
-		return total;
+		return total.get();
 	}
 }
@@ -1,14 +1,26 @@
 package br.com.caelum.leilao.servico;
 
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import br.com.caelum.leilao.dominio.Leilao;
 import br.com.caelum.leilao.dominio.Pagamento;
+import br.com.caelum.leilao.infra.dao.Cursores;
+import br.com.caelum.leilao.infra.dao.Particao;
 import br.com.caelum.leilao.infra.dao.Relogio;
 import br.com.caelum.leilao.infra.dao.RelogioDoSistema;
+import br.com.caelum.leilao.infra.dao.Relogios;
 import br.com.caelum.leilao.infra.dao.RepositorioDeLeiloes;
 import br.com.caelum.leilao.infra.dao.RepositorioDePagamentos;
+import br.com.caelum.leilao.infra.dao.ReservasDeParticoes;
 
 public class GeradorDePagamento {
 
@@ -16,6 +28,12 @@ public class GeradorDePagamento {
 	private final RepositorioDeLeiloes leiloes;
 	private final Avaliador avaliador;
 	private Relogio relogio;
+	private CalendarioDeDiasUteis calendario = new CalendarioDeFeriados();
+	private int tamanhoDoLote;
+	private ExecutorService executor;
+	private int maximoEmAndamento;
+	private boolean apenasNaoPagos;
+	private Particionamento particionamento;
 
 	public GeradorDePagamento(RepositorioDeLeiloes leiloes, RepositorioDePagamentos pagamentos, Avaliador avaliador) {
 		this(leiloes, pagamentos, avaliador, new RelogioDoSistema());
@@ -28,29 +46,155 @@ public class GeradorDePagamento {
 		this.relogio = relogio;
 	}
 
+	/*
+	 * Junta os pagamentos gerados e os grava com pagamentos.salvaTodos(), um lote
+	 * de cada vez, em vez de um pagamentos.salva() por leilo.
+	 */
+	public GeradorDePagamento emLotesDe(int tamanhoDoLote) {
+		if (tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("O lote precisa ter ao menos um pagamento!");
+		}
+		this.tamanhoDoLote = tamanhoDoLote;
+		return this;
+	}
+
+	/*
+	 * Avalia os leiles encerrados no executor, com no mximo maximoEmAndamento
+	 * avaliaes pendentes. Os pagamentos continuam sendo criados e gravados
+	 * nesta thread, na ordem em que os leiles chegaram, ento o resultado  o
+	 * mesmo da execuo sequencial.
+	 */
+	public GeradorDePagamento emParalelo(ExecutorService executor, int maximoEmAndamento) {
+		if (maximoEmAndamento < 1) {
+			throw new IllegalArgumentException(" preciso permitir ao menos um leilo em andamento!");
+		}
+		this.executor = executor;
+		this.maximoEmAndamento = maximoEmAndamento;
+		return this;
+	}
+
+	/*
+	 * Em vez de gerar pagamento para todos os leiles encerrados a cada
+	 * execuo, busca apenas os que ainda no foram pagos. O repositrio de
+	 * pagamentos marca o leilo como pago junto com o pagamento, ento uma
+	 * nova execuo, inclusive depois de uma queda, no paga o mesmo leilo
+	 * duas vezes.
+	 */
+	public GeradorDePagamento apenasNaoPagos() {
+		this.apenasNaoPagos = true;
+		return this;
+	}
+
+	/*
+	 * Por padro s sbados e domingos empurram o pagamento; aqui  possvel
+	 * informar um calendrio que tambm conhea os feriados.
+	 */
+	public GeradorDePagamento comCalendario(CalendarioDeDiasUteis calendario) {
+		this.calendario = calendario;
+		return this;
+	}
+
+	/*
+	 * Divide os leiles encerrados em "particoes" parties pelo id e s gera
+	 * os pagamentos das que conseguir reservar. Os pagamentos de uma partio
+	 * so todos gravados antes de ela ser liberada, e a reserva  renovada
+	 * antes de cada lote, ento a durao precisa cobrir s um lote.
+	 */
+	public GeradorDePagamento emParticoes(ReservasDeParticoes reservas, int particoes, String dono, long duracaoDaReservaEmMillis) {
+		this.particionamento = new Particionamento("pagamento", reservas, particoes, dono, duracaoDaReservaEmMillis);
+		return this;
+	}
+
 	public void gera() {
 
-		List<Leilao> leiloesEncerrados = leiloes.encerrados();
-		for (Leilao leilao : leiloesEncerrados) {
-			avaliador.avalia(leilao);
+		final LocalDate dataDoPagamento = calendario.proximoDiaUtil(Relogios.agora(relogio).toLocalDate());
+		if (particionamento == null) {
+			gera(aPagar(), dataDoPagamento, null);
+			return;
+		}
 
-			Pagamento novoPagamento = new Pagamento(avaliador.getMaiorLance(), primeiroDiaUtil());
+		particionamento.processa(new Particionamento.Trabalho() {
+			public void executa(Particao particao, Particionamento.Reserva reserva) {
+				gera(aPagar(particao), dataDoPagamento, reserva);
+			}
+		});
+	}
+
+	private void gera(Iterable<Leilao> aPagar, LocalDate dataDoPagamento, Particionamento.Reserva reserva) {
+		List<Pagamento> lote = new ArrayList<Pagamento>(tamanhoDoLote);
+		Iterator<Leilao> cursor = aPagar.iterator();
+		try {
+			if (executor == null) {
+				while (cursor.hasNext()) {
+					Leilao leilao = cursor.next();
+					lote = paga(leilao, avaliador.avalia(leilao), dataDoPagamento, lote, reserva);
+				}
+			} else {
+				Deque<Leilao> avaliando = new ArrayDeque<Leilao>(maximoEmAndamento);
+				Deque<Future<Avaliacao>> emAndamento = new ArrayDeque<Future<Avaliacao>>(maximoEmAndamento);
+				while (cursor.hasNext()) {
+					final Leilao leilao = cursor.next();
+					if (emAndamento.size() == maximoEmAndamento) {
+						lote = paga(avaliando.poll(), aguarda(emAndamento.poll()), dataDoPagamento, lote, reserva);
+					}
+					avaliando.add(leilao);
+					emAndamento.add(executor.submit(new Callable<Avaliacao>() {
+						public Avaliacao call() {
+							return avaliador.avalia(leilao);
+						}
+					}));
+				}
+				while (!emAndamento.isEmpty()) {
+					lote = paga(avaliando.poll(), aguarda(emAndamento.poll()), dataDoPagamento, lote, reserva);
+				}
+			}
+		} finally {
+			Cursores.fecha(cursor);
+		}
+		if (!lote.isEmpty()) grava(lote, reserva);
+	}
+
+	private Iterable<Leilao> aPagar() {
+		return apenasNaoPagos ? leiloes.percorreEncerradosSemPagamento() : leiloes.percorreEncerrados();
+	}
+
+	private Iterable<Leilao> aPagar(Particao particao) {
+		return apenasNaoPagos ? leiloes.percorreEncerradosSemPagamento(particao) : leiloes.percorreEncerrados(particao);
+	}
+
+	private List<Pagamento> paga(Leilao leilao, Avaliacao avaliacao, LocalDate data, List<Pagamento> lote,
+			Particionamento.Reserva reserva) {
+		Pagamento novoPagamento = new Pagamento(leilao, avaliacao.getMaiorLance(), data);
+		if (tamanhoDoLote == 0) {
+			if (reserva != null) reserva.renova();
 			pagamentos.salva(novoPagamento);
+			return lote;
 		}
+		
+		lote.add(novoPagamento);
+		if (lote.size() < tamanhoDoLote) return lote;
+		
+		grava(lote, reserva);
+		return new ArrayList<Pagamento>(tamanhoDoLote);
 	}
 
 	/*
-	 * Caso o dia atual seja Sbado, ou Domingo, joga o pagamento para Segunda Feira
+	 * Com parties, a reserva  renovada logo antes de o lote ser gravado.
 	 */
-	private Calendar primeiroDiaUtil() {
-		Calendar data = relogio.hoje();
-		int diaDaSemana = data.get(Calendar.DAY_OF_WEEK);
-
-		if (diaDaSemana == Calendar.SATURDAY)
-			data.add(Calendar.DAY_OF_MONTH, 2);
-		else if (diaDaSemana == Calendar.SUNDAY)
-			data.add(Calendar.DAY_OF_MONTH, 1);
+	private void grava(List<Pagamento> lote, Particionamento.Reserva reserva) {
+		if (reserva != null) reserva.renova();
+		pagamentos.salvaTodos(lote);
+	}
 
-		return data;
+	private Avaliacao aguarda(Future<Avaliacao> avaliacao) {
+		try {
+			return avaliacao.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
 	}
 }
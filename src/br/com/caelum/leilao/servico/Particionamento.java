@@ -0,0 +1,83 @@
+package br.com.caelum.leilao.servico;
+
+import br.com.caelum.leilao.infra.dao.Particao;
+import br.com.caelum.leilao.infra.dao.ReservasDeParticoes;
+
+/*
+ * Percorre as parties de uma tarefa, processando apenas as que conseguir
+ * reservar. Cada dono comea por uma partio diferente (pelo hash do nome),
+ * para que vrios workers iniciados juntos no disputem todos a primeira.
+ * 
+ * O trabalho renova a reserva antes de cada lote, ento ela s precisa durar
+ * mais que o processamento de um lote. Se a renovao falha, a partio j 
+ * de outro worker: o trabalho para ali, sem gravar o lote, e o particionamento
+ * segue para a prxima partio.
+ */
+class Particionamento {
+
+	interface Trabalho {
+		void executa(Particao particao, Reserva reserva);
+	}
+
+	/*
+	 * A reserva da partio em andamento.
+	 */
+	class Reserva {
+		private final Particao particao;
+
+		private Reserva(Particao particao) {
+			this.particao = particao;
+		}
+
+		/*
+		 * Estende o prazo da reserva; lana ReservaPerdida se ela j  de outro
+		 * dono.
+		 */
+		void renova() {
+			if (!reservas.reserva(tarefa, particao, dono, duracaoDaReservaEmMillis)) {
+				throw new ReservaPerdida(tarefa + " " + particao);
+			}
+		}
+	}
+
+	static class ReservaPerdida extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ReservaPerdida(String mensagem) {
+			super(mensagem);
+		}
+	}
+
+	private final String tarefa;
+	private final ReservasDeParticoes reservas;
+	private final int particoes;
+	private final String dono;
+	private final long duracaoDaReservaEmMillis;
+
+	Particionamento(String tarefa, ReservasDeParticoes reservas, int particoes, String dono, long duracaoDaReservaEmMillis) {
+		if (particoes < 1) {
+			throw new IllegalArgumentException(" preciso ao menos uma partio!");
+		}
+		this.tarefa = tarefa;
+		this.reservas = reservas;
+		this.particoes = particoes;
+		this.dono = dono;
+		this.duracaoDaReservaEmMillis = duracaoDaReservaEmMillis;
+	}
+
+	void processa(Trabalho trabalho) {
+		int inicio = Math.floorMod(dono.hashCode(), particoes);
+		for (int i = 0; i < particoes; i++) {
+			Particao particao = new Particao((inicio + i) % particoes, particoes);
+			if (!reservas.reserva(tarefa, particao, dono, duracaoDaReservaEmMillis)) continue;
+			
+			try {
+				trabalho.executa(particao, new Reserva(particao));
+			} catch (ReservaPerdida ex) {
+				// outro worker assumiu a partio e a termina
+			} finally {
+				reservas.libera(tarefa, particao, dono);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package br.com.caelum.leilao.servico;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.caelum.leilao.dominio.Notificacao;
+import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.RepositorioDeNotificacoes;
+
+/*
+ * Esvazia a caixa de sada: busca as notificaes pendentes em lotes, envia
+ * cada uma pelo carteiro e marca o lote como enviado. Quem falha fica na caixa
+ * para a prxima execuo, at atingir o nmero mximo de tentativas. Se a
+ * execuo cair entre o envio e a marcao, a notificao  enviada de novo.
+ */
+public class RetransmissorDeNotificacoes {
+
+	private final RepositorioDeNotificacoes notificacoes;
+	private final EnviadorDeEmail carteiro;
+	private final int tamanhoDoLote;
+	private final int tentativasMaximas;
+
+	public RetransmissorDeNotificacoes(RepositorioDeNotificacoes notificacoes, EnviadorDeEmail carteiro) {
+		this(notificacoes, carteiro, 100, 5);
+	}
+
+	public RetransmissorDeNotificacoes(RepositorioDeNotificacoes notificacoes, EnviadorDeEmail carteiro,
+			int tamanhoDoLote, int tentativasMaximas) {
+		this.notificacoes = notificacoes;
+		this.carteiro = carteiro;
+		this.tamanhoDoLote = tamanhoDoLote;
+		this.tentativasMaximas = tentativasMaximas;
+	}
+
+	/*
+	 * Cada lote comea depois do ltimo id do lote anterior, ento cada
+	 * notificao  tentada uma nica vez por execuo, e as que falham no
+	 * impedem que as seguintes sejam tentadas.
+	 */
+	public int retransmite() {
+		int total = 0;
+		int ultimoId = 0;
+		while (true) {
+			List<Notificacao> lote = notificacoes.pendentes(ultimoId, tamanhoDoLote, tentativasMaximas);
+
+			List<Notificacao> enviadas = new ArrayList<Notificacao>(lote.size());
+			for (Notificacao notificacao : lote) {
+				ultimoId = notificacao.getId();
+				try {
+					carteiro.envia(notificacao.getLeilao());
+					enviadas.add(notificacao);
+				} catch (Exception ex) {
+					notificacoes.registraFalha(notificacao);
+				}
+			}
+			if (!enviadas.isEmpty()) notificacoes.marcaEnviadas(enviadas);
+			total += enviadas.size();
+
+			if (lote.size() < tamanhoDoLote) break;
+		}
+		return total;
+	}
+}
@@ -14,6 +14,7 @@ public class CriadorDeLeilao {
 	private Calendar data;
 	private List<Lance> lances;
 	private boolean encerrado;
+	private int quantidadeDeMaiores;
 
 	public CriadorDeLeilao() {
 		this.data = Calendar.getInstance();
@@ -40,8 +41,14 @@ public class CriadorDeLeilao {
 		return this;
 	}
 
+	public CriadorDeLeilao comEstatisticas(int quantidadeDeMaiores) {
+		this.quantidadeDeMaiores = quantidadeDeMaiores;
+		return this;
+	}
+
 	public Leilao constroi() {
 		Leilao leilao = new Leilao(descricao, data);
+		if(quantidadeDeMaiores > 0) leilao.mantemEstatisticas(quantidadeDeMaiores);
 		for(Lance lanceDado : lances) leilao.propoe(lanceDado);
 		if(encerrado) leilao.encerra();
 				
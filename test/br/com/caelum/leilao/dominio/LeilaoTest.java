@@ -1,5 +1,15 @@
 package br.com.caelum.leilao.dominio;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -60,4 +70,134 @@ public class LeilaoTest {
 		assertEquals(10, leilao.getLances().size());
 		assertEquals(11000.0, leilao.getLances().get(leilao.getLances().size()-1).getValor(), 0.00001);
 	}	
+
+	@Test
+	public void deveContarLancesDeUsuariosIguaisComoDoMesmoUsuario() {
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		for(int i = 0; i < 6; i++) {
+			leilao.propoe(new Lance(new Usuario("Steve Jobs"), 1000 + i * 2));
+			leilao.propoe(new Lance(new Usuario("Bill Gates"), 1001 + i * 2));
+		}
+		leilao.propoe(new Lance(new Usuario("Steve Jobs"), 5000));
+		
+		assertEquals(10, leilao.getLances().size());
+		assertEquals(1009.0, leilao.getLances().get(leilao.getLances().size()-1).getValor(), 0.00001);
+	}
+
+	@Test
+	public void deveManterAsEstatisticasACadaLanceAceito() {
+		Usuario steveJobs = new Usuario("Steve Jobs");
+		Usuario billGates = new Usuario("Bill Gates");
+
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		leilao.propoe(new Lance(steveJobs, 2000));
+		leilao.mantemEstatisticas(2);
+		leilao.propoe(new Lance(billGates, 3000));
+		leilao.propoe(new Lance(billGates, 9000));
+		leilao.propoe(new Lance(steveJobs, 1000));
+		
+		EstatisticasDoLeilao estatisticas = leilao.getEstatisticas();
+		assertEquals(3, estatisticas.getQuantidade());
+		assertEquals(3000.0, estatisticas.getMaiorLance(), 0.00001);
+		assertEquals(1000.0, estatisticas.getMenorLance(), 0.00001);
+		assertEquals(2000.0, estatisticas.getMedia(), 0.00001);
+		assertEquals(2, estatisticas.getMaiores().size());
+		assertEquals(3000.0, estatisticas.getMaiores().get(0).getValor(), 0.00001);
+		assertEquals(2000.0, estatisticas.getMaiores().get(1).getValor(), 0.00001);
+	}
+
+	@Test
+	public void deveAplicarAsMesmasRegrasComOsLancesEmColunas() {
+		Usuario steveJobs = new Usuario("Steve Jobs");
+		Usuario billGates = new Usuario("Bill Gates");
+
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		leilao.propoe(new Lance(steveJobs, 2000));
+		leilao.guardaLancesEmColunas(true);
+		for (int i = 0; i < 20; i++) {
+			leilao.propoe(new Lance(i % 2 == 0 ? billGates : steveJobs, 3000 + i));
+		}
+		leilao.propoe(new Lance(billGates, 9000));
+
+		assertEquals(10, leilao.getLances().size());
+		assertEquals(2000.0, leilao.getLances().get(0).getValor(), 0.00001);
+		assertEquals(steveJobs, leilao.getLances().get(0).getUsuario());
+		assertEquals(3008.0, leilao.getLances().get(9).getValor(), 0.00001);
+		assertEquals(billGates, leilao.getLances().get(9).getUsuario());
+	}
+
+	@Test
+	public void deveDevolverSempreAMesmaVisaoDosLances() {
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		List<Lance> lances = leilao.getLances();
+
+		leilao.propoe(new Lance(new Usuario("Steve Jobs"), 2000));
+
+		assertSame(lances, leilao.getLances());
+		assertEquals(1, lances.size());
+		assertEquals(1, leilao.getQuantidadeDeLances());
+	}
+
+	@Test
+	public void deveDevolverADataComoCalendarSemExporOEstadoDoLeilao() {
+		Calendar inicio = Calendar.getInstance();
+		inicio.set(2020, Calendar.APRIL, 25, 10, 30);
+		Leilao leilao = new Leilao("Macbook Pro 15", inicio);
+
+		Calendar data = leilao.getData();
+		data.add(Calendar.DAY_OF_MONTH, 1);
+
+		assertEquals(inicio.getTimeInMillis(), leilao.getData().getTimeInMillis());
+		assertEquals(inicio.toInstant(), leilao.getInstante());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void naoDevePermitirAlterarOsLancesEmColunasPelaVisao() {
+		Leilao leilao = new Leilao("Macbook Pro 15");
+		leilao.guardaLancesEmColunas(false);
+
+		leilao.getLances().add(new Lance(new Usuario("Steve Jobs"), 2000));
+	}
+
+	@Test
+	public void naoDeveFurarAsRegrasComLancesDeVariasThreads() throws InterruptedException {
+		final Usuario[] usuarios = { new Usuario(1, "Steve Jobs"), new Usuario(2, "Bill Gates"),
+				new Usuario(3, "Steve Wozniak"), new Usuario(4, "Linus Torvalds") };
+
+		for (int rodada = 0; rodada < 50; rodada++) {
+			final Leilao leilao = new Leilao("Macbook Pro 15");
+			final CountDownLatch largada = new CountDownLatch(1);
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int t = 0; t < 8; t++) {
+				final int deslocamento = t;
+				Thread thread = new Thread() {
+					public void run() {
+						try {
+							largada.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+						for (int i = 0; i < 200; i++) {
+							leilao.propoe(new Lance(usuarios[(i + deslocamento) % usuarios.length], i));
+						}
+					}
+				};
+				thread.start();
+				threads.add(thread);
+			}
+			largada.countDown();
+			for (Thread thread : threads) thread.join();
+
+			List<Lance> lances = leilao.getLances();
+			Map<Usuario, Integer> porUsuario = new HashMap<Usuario, Integer>();
+			for (int i = 0; i < lances.size(); i++) {
+				Usuario usuario = lances.get(i).getUsuario();
+				if (i > 0) assertNotEquals(lances.get(i - 1).getUsuario(), usuario);
+				Integer total = porUsuario.get(usuario);
+				porUsuario.put(usuario, total == null ? 1 : total + 1);
+			}
+			for (Integer total : porUsuario.values()) assertTrue(total <= 5);
+			assertTrue(lances.size() <= 20);
+		}
+	}
 }
@@ -0,0 +1,81 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.com.caelum.leilao.dominio.Usuario;
+
+/*
+ * Um H2 em memria, no modo MySQL, com as tabelas criadas pelos scripts da
+ * pasta sql/ (ScriptsDoBanco). Cada chamada a abre() cria um banco novo,
+ * que existe enquanto o pool tiver alguma conexo aberta.
+ * 
+ * O H2 no faz parte das libs do projeto: sem o driver no classpath, os testes
+ * que usam o banco so ignorados.
+ */
+class BancoEmMemoria {
+
+	private static final AtomicInteger bancos = new AtomicInteger();
+
+	static PoolDeConexoes abre(int conexoes) {
+		assumeTrue("Driver do H2 fora do classpath", temDriver());
+		
+		String url = "jdbc:h2:mem:leilao" + bancos.incrementAndGet() + ";MODE=MySQL";
+		PoolDeConexoes pool = new PoolDeConexoes(url, "sa", "", 1, conexoes, 1000);
+		ConexaoComCache conexao = pool.obtem();
+		try {
+			ScriptsDoBanco.executa(conexao.getConexao());
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.devolve(conexao);
+		}
+		return pool;
+	}
+
+	static Usuario usuario(PoolDeConexoes pool, String nome) {
+		ConexaoComCache conexao = pool.obtem();
+		try {
+			Statement st = conexao.getConexao().createStatement();
+			st.executeUpdate("INSERT INTO USUARIO (NOME) VALUES ('" + nome + "')", Statement.RETURN_GENERATED_KEYS);
+			ResultSet chaves = st.getGeneratedKeys();
+			chaves.next();
+			Usuario usuario = new Usuario(chaves.getInt(1), nome);
+			st.close();
+			return usuario;
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.devolve(conexao);
+		}
+	}
+
+	static int conta(PoolDeConexoes pool, String sql) {
+		ConexaoComCache conexao = pool.obtem();
+		try {
+			Statement st = conexao.getConexao().createStatement();
+			ResultSet rs = st.executeQuery(sql);
+			rs.next();
+			int total = rs.getInt(1);
+			st.close();
+			return total;
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.devolve(conexao);
+		}
+	}
+
+	private static boolean temDriver() {
+		try {
+			Class.forName("org.h2.Driver");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import br.com.caelum.leilao.dominio.Usuario;
+
+public class CacheDeUsuariosTest {
+
+	@Test
+	public void deveDevolverAMesmaInstanciaPeloId() {
+		CacheDeUsuarios cache = new CacheDeUsuarios(10);
+		Usuario joao = new Usuario(1, "Joo");
+
+		cache.guarda(joao);
+
+		assertSame(joao, cache.busca(1));
+		assertNull(cache.busca(2));
+		assertEquals(1, cache.getAcertos());
+		assertEquals(1, cache.getFaltas());
+	}
+
+	@Test
+	public void deveDescartarOUsuarioUsadoHaMaisTempo() {
+		CacheDeUsuarios cache = new CacheDeUsuarios(2);
+		cache.guarda(new Usuario(1, "Joo"));
+		cache.guarda(new Usuario(2, "Jos"));
+
+		cache.busca(1);
+		cache.guarda(new Usuario(3, "Maria"));
+
+		assertNull(cache.busca(2));
+		assertEquals("Joo", cache.busca(1).getNome());
+		assertEquals("Maria", cache.busca(3).getNome());
+	}
+
+	@Test
+	public void deveRespeitarOMaximoMesmoDivididoEmSegmentos() {
+		CacheDeUsuarios cache = new CacheDeUsuarios(1024);
+		for(int id = 1; id <= 5000; id++) cache.guarda(new Usuario(id, "Usurio " + id));
+
+		int guardados = 0;
+		for(int id = 1; id <= 5000; id++) {
+			if(cache.busca(id) != null) guardados++;
+		}
+
+		assertEquals(1024, guardados);
+		assertNull(cache.busca(1));
+		assertEquals("Usurio 5000", cache.busca(5000).getNome());
+	}
+}
@@ -0,0 +1,136 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.caelum.leilao.dominio.Leilao;
+
+public class EnviadorDeEmailAssincronoTest {
+
+	/*
+	 * Transporte falso: s guarda os lotes que recebeu. Falha para o leilo com
+	 * a descrio "falha" e lana um Error para o leilo com a descrio "erro".
+	 */
+	private static class TransporteFalso implements EnviadorDeEmailEmLote {
+
+		private final List<List<Leilao>> lotes = Collections.synchronizedList(new ArrayList<List<Leilao>>());
+
+		public void envia(Leilao leilao) {
+			enviaTodos(Collections.singletonList(leilao));
+		}
+
+		public void enviaTodos(List<Leilao> leiloes) {
+			for(Leilao leilao : leiloes) {
+				if("falha".equals(leilao.getDescricao())) throw new RuntimeException("SMTP fora do ar");
+				if("erro".equals(leilao.getDescricao())) throw new Error("transporte quebrado");
+			}
+			lotes.add(new ArrayList<Leilao>(leiloes));
+		}
+
+		int totalEntregue() {
+			int total = 0;
+			synchronized(lotes) {
+				for(List<Leilao> lote : lotes) total += lote.size();
+			}
+			return total;
+		}
+	}
+
+	@Test
+	public void deveEntregarTudoQueFoiEnfileirado() throws InterruptedException {
+		TransporteFalso transporte = new TransporteFalso();
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(transporte, 10, 2, 5, 50);
+
+		for(int i = 0; i < 100; i++) carteiro.envia(new Leilao("Leilo " + i));
+		carteiro.encerra();
+
+		assertEquals(100, transporte.totalEntregue());
+		assertEquals(0, carteiro.getFalhas());
+	}
+
+	@Test
+	public void deveAgruparEmLotesDeNoMaximoOTamanhoPedido() throws InterruptedException {
+		TransporteFalso transporte = new TransporteFalso();
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(transporte, 100, 1, 4, 200);
+
+		for(int i = 0; i < 10; i++) carteiro.envia(new Leilao("Leilo " + i));
+		carteiro.esvazia();
+
+		for(List<Leilao> lote : transporte.lotes) assertTrue(lote.size() <= 4);
+		assertTrue(transporte.lotes.size() < 10);
+		assertEquals(10, transporte.totalEntregue());
+		carteiro.encerra();
+	}
+
+	@Test
+	public void deveContarFalhasSemPararDeEntregar() throws InterruptedException {
+		TransporteFalso transporte = new TransporteFalso();
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(transporte, 10, 1, 1, 10);
+
+		carteiro.envia(new Leilao("TV de plasma"));
+		carteiro.envia(new Leilao("falha"));
+		carteiro.envia(new Leilao("Geladeira"));
+		carteiro.encerra();
+
+		assertEquals(2, transporte.totalEntregue());
+		assertEquals(1, carteiro.getFalhas());
+	}
+
+	@Test(timeout=5000)
+	public void deveContinuarEntregandoDepoisDeUmErroNoTransporte() throws InterruptedException {
+		TransporteFalso transporte = new TransporteFalso();
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(transporte, 10, 1, 1, 10);
+
+		carteiro.envia(new Leilao("erro"));
+		carteiro.envia(new Leilao("Geladeira"));
+		carteiro.encerra();
+
+		assertEquals(1, transporte.totalEntregue());
+		assertEquals(1, carteiro.getFalhas());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void naoDeveAceitarZeroThreads() {
+		new EnviadorDeEmailAssincrono(new TransporteFalso(), 10, 0, 1, 10);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void naoDeveAceitarFilaSemCapacidade() {
+		new EnviadorDeEmailAssincrono(new TransporteFalso(), 0, 1, 1, 10);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void naoDeveAceitarLotesVazios() {
+		new EnviadorDeEmailAssincrono(new TransporteFalso(), 10, 1, 0, 10);
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void naoDeveAceitarEmailsDepoisDeEncerrado() throws InterruptedException {
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(new TransporteFalso(), 10, 1, 1, 10);
+		carteiro.encerra();
+
+		carteiro.envia(new Leilao("TV de plasma"));
+	}
+
+	@Test(timeout=5000)
+	public void deveEntregarOLoteEmAndamentoQuandoAThreadEhInterrompida() throws InterruptedException {
+		TransporteFalso transporte = new TransporteFalso();
+		EnviadorDeEmailAssincrono carteiro = new EnviadorDeEmailAssincrono(transporte, 10, 1, 10, 60000);
+
+		carteiro.envia(new Leilao("TV de plasma"));
+		carteiro.envia(new Leilao("Geladeira"));
+		Thread.sleep(100); // a thread j pegou os dois e espera o resto do lote
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(thread.getName().startsWith("carteiro-")) thread.interrupt();
+		}
+		carteiro.esvazia();
+
+		assertEquals(2, transporte.totalEntregue());
+	}
+}
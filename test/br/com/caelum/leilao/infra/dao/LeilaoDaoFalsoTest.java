@@ -0,0 +1,148 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Leilao;
+
+public class LeilaoDaoFalsoTest {
+
+	private List<Leilao> lista(Iterable<Leilao> leiloes) {
+		List<Leilao> lista = new ArrayList<Leilao>();
+		for (Leilao leilao : leiloes) lista.add(leilao);
+		return lista;
+	}
+
+	@Test
+	public void deveMoverOLeilaoDeParticaoAoSerAtualizado() {
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		Leilao tv = new CriadorDeLeilao().para("TV de plasma").constroi();
+		Leilao geladeira = new CriadorDeLeilao().para("Geladeira").constroi();
+		dao.salvaTodos(Arrays.asList(tv, geladeira));
+
+		tv.encerra();
+		assertEquals(2, dao.correntes().size());
+
+		dao.atualiza(tv);
+
+		assertEquals(Arrays.asList(geladeira), dao.correntes());
+		assertEquals(Arrays.asList(tv), dao.encerrados());
+		assertEquals(Arrays.asList(tv), lista(dao.percorreEncerradosSemPagamento()));
+		assertSame(tv, dao.porId(tv.getId()));
+	}
+
+	@Test
+	public void deveTirarDosSemPagamentoOsLeiloesJaPagos() {
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		Leilao tv = new CriadorDeLeilao().para("TV de plasma").encerrado().constroi();
+		dao.salva(tv);
+
+		tv.paga();
+
+		assertTrue(lista(dao.percorreEncerradosSemPagamento()).isEmpty());
+		assertEquals(1, dao.encerrados().size());
+	}
+
+	@Test
+	public void deveBuscarOsCorrentesIniciadosAteODiaInformado() {
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		Leilao antigo = new CriadorDeLeilao().para("TV de plasma").naData(diasAtras(10)).constroi();
+		Leilao doLimite = new CriadorDeLeilao().para("Geladeira").naData(diasAtras(6)).constroi();
+		Leilao recente = new CriadorDeLeilao().para("Fogo").naData(diasAtras(1)).constroi();
+		Leilao encerrado = new CriadorDeLeilao().para("Xbox").naData(diasAtras(20)).encerrado().constroi();
+		dao.salvaTodos(Arrays.asList(antigo, doLimite, recente, encerrado));
+
+		List<Leilao> encontrados = lista(dao.correntesIniciadosAntesDe(LocalDate.now().minusDays(6)));
+
+		assertEquals(2, encontrados.size());
+		assertTrue(encontrados.containsAll(Arrays.asList(antigo, doLimite)));
+	}
+
+	@Test
+	public void deveManterAsParticoesAtualizadasDepoisDaPrimeiraConsulta() {
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for (int i = 0; i < 6; i++) leiloes.add(new CriadorDeLeilao().para("Leilo " + i).encerrado().constroi());
+		dao.salvaTodos(leiloes);
+
+		Set<Leilao> vistos = new HashSet<Leilao>();
+		for (int numero = 0; numero < 3; numero++) {
+			Particao particao = new Particao(numero, 3);
+			for (Leilao leilao : dao.percorreEncerrados(particao)) {
+				assertTrue(particao.contem(leilao.getId()));
+				assertTrue(vistos.add(leilao));
+			}
+		}
+		assertEquals(6, vistos.size());
+
+		Leilao novo = new CriadorDeLeilao().para("Xbox").encerrado().constroi();
+		dao.salva(novo);
+		Leilao pago = leiloes.get(0);
+		pago.paga();
+		dao.atualiza(pago);
+
+		Particao doNovo = new Particao(Math.floorMod(novo.getId(), 3), 3);
+		assertTrue(lista(dao.percorreEncerrados(doNovo)).contains(novo));
+		Particao doPago = new Particao(Math.floorMod(pago.getId(), 3), 3);
+		assertFalse(lista(dao.percorreEncerradosSemPagamento(doPago)).contains(pago));
+	}
+
+	@Test
+	public void deveAceitarLeiloesDeVariasThreadsAoMesmoTempo() throws InterruptedException {
+		final LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		final CountDownLatch largada = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						largada.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 250; i++) {
+						Leilao leilao = new CriadorDeLeilao().para("Leilo " + i).constroi();
+						dao.salva(leilao);
+						if (i % 2 == 0) dao.encerraTodos(Arrays.asList(leilao.getId()));
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		largada.countDown();
+		for (Thread thread : threads) thread.join();
+
+		Set<Integer> ids = new HashSet<Integer>();
+		for (Leilao leilao : dao.correntes()) {
+			assertFalse(leilao.isEncerrado());
+			ids.add(leilao.getId());
+		}
+		for (Leilao leilao : dao.encerrados()) {
+			assertTrue(leilao.isEncerrado());
+			ids.add(leilao.getId());
+		}
+		assertEquals(500, dao.correntes().size());
+		assertEquals(1000, ids.size());
+	}
+
+	private Calendar diasAtras(int dias) {
+		Calendar data = Calendar.getInstance();
+		data.add(Calendar.DAY_OF_MONTH, -dias);
+		return data;
+	}
+}
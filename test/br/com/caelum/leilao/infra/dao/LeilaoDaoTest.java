@@ -0,0 +1,273 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Notificacao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+public class LeilaoDaoTest {
+
+	/*
+	 * Pool de uma conexo s, do Mockito, cuja consulta devolve leiles sem
+	 * lances com ids 1, 2, 3... indefinidamente.
+	 */
+	private static class PoolDeUmaConexao extends PoolDeConexoes {
+
+		private PreparedStatement ps;
+		private ResultSet rs;
+
+		PoolDeUmaConexao() {
+			super("jdbc:falso", "", "", 0, 1, 10);
+		}
+
+		protected Connection novaConexao() throws SQLException {
+			Connection conexao = mock(Connection.class);
+			ps = mock(PreparedStatement.class);
+			rs = mock(ResultSet.class);
+			when(conexao.isValid(anyInt())).thenReturn(true);
+			when(conexao.prepareStatement(anyString())).thenReturn(ps);
+			when(ps.executeQuery()).thenReturn(rs);
+			when(rs.next()).thenReturn(true);
+			when(rs.getInt("id")).thenReturn(1, 1, 2, 2, 3, 3);
+			when(rs.getDate("data")).thenReturn(new java.sql.Date(0));
+			when(rs.wasNull()).thenReturn(true);
+			return conexao;
+		}
+	}
+
+	@Test
+	public void deveDevolverAConexaoQuandoOCursorEhFechadoAntesDoFim() throws SQLException {
+		PoolDeUmaConexao pool = new PoolDeUmaConexao();
+		LeilaoDao dao = new LeilaoDao(pool);
+
+		Iterator<Leilao> cursor = dao.percorreEncerrados().iterator();
+		try {
+			while(cursor.hasNext()) {
+				if(cursor.next().getId() == 1) break;
+			}
+		} finally {
+			Cursores.fecha(cursor);
+		}
+
+		verify(pool.rs).close();
+		verify(pool.ps).close();
+		// com a conexo devolvida, o pool de uma conexo s volta a emprest-la
+		pool.devolve(pool.obtem());
+	}
+
+	@Test
+	public void deveDevolverAConexaoDepoisDeBuscarPorId() {
+		PoolDeUmaConexao pool = new PoolDeUmaConexao();
+		LeilaoDao dao = new LeilaoDao(pool);
+
+		assertEquals(1, dao.porId(1).getId());
+		assertEquals(2, dao.porId(2).getId());
+	}
+
+	@Test
+	public void deveCarregarDoBancoOsLeiloesComSeusLances() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(2);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Usuario joao = BancoEmMemoria.usuario(banco, "Joo");
+			Usuario maria = BancoEmMemoria.usuario(banco, "Maria");
+			Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(joao, 200).lance(maria, 300).encerrado().constroi();
+			Leilao semLances = new CriadorDeLeilao().para("Geladeira").encerrado().constroi();
+			dao.salvaTodos(Arrays.asList(leilao, semLances));
+
+			List<Leilao> encerrados = dao.encerrados();
+
+			assertEquals(2, encerrados.size());
+			assertEquals("Playstation", encerrados.get(0).getDescricao());
+			assertEquals(2, encerrados.get(0).getLances().size());
+			assertEquals(maria, encerrados.get(0).getLances().get(1).getUsuario());
+			assertEquals(300, encerrados.get(0).getLances().get(1).getValor(), 0.00001);
+			assertEquals(0, encerrados.get(1).getLances().size());
+			assertFalse(encerrados.get(0).isPago());
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void deveBuscarNoBancoOsCorrentesIniciadosAteOLimite() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(2);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Calendar antiga = Calendar.getInstance();
+			antiga.set(2020, Calendar.APRIL, 1);
+			Calendar recente = Calendar.getInstance();
+			recente.set(2020, Calendar.APRIL, 20);
+			Leilao antigo = new CriadorDeLeilao().para("TV").naData(antiga).constroi();
+			Leilao novo = new CriadorDeLeilao().para("Geladeira").naData(recente).constroi();
+			Leilao encerrado = new CriadorDeLeilao().para("Playstation").naData(antiga).encerrado().constroi();
+			dao.salvaTodos(Arrays.asList(antigo, novo, encerrado));
+
+			Iterator<Leilao> correntes = dao.correntesIniciadosAntesDe(LocalDate.of(2020, 4, 10)).iterator();
+
+			assertEquals(antigo.getId(), correntes.next().getId());
+			assertFalse(correntes.hasNext());
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void deveBuscarNoBancoApenasOsLeiloesDaParticao() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(2);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			List<Leilao> todos = new ArrayList<Leilao>();
+			for(int i = 0; i < 6; i++) todos.add(new CriadorDeLeilao().para("Leilo " + i).encerrado().constroi());
+			dao.salvaTodos(todos);
+
+			int daParticao = 0;
+			for(Leilao leilao : dao.percorreEncerrados(new Particao(1, 3))) {
+				assertEquals(1, leilao.getId() % 3);
+				daParticao++;
+			}
+			assertEquals(2, daParticao);
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void naoDeveGravarNenhumLeilaoQuandoOLoteFalhaNoMeio() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(2);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Usuario joao = BancoEmMemoria.usuario(banco, "Joo");
+			Leilao playstation = new CriadorDeLeilao().para("Playstation").lance(joao, 200).constroi();
+			Leilao semUsuario = new CriadorDeLeilao().para("Geladeira").constroi();
+			semUsuario.propoe(new Lance(null, 900));
+
+			try {
+				dao.salvaTodos(Arrays.asList(playstation, semUsuario));
+				fail();
+			} catch (NullPointerException e) {
+			}
+
+			assertEquals(0, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM LEILAO"));
+			assertEquals(0, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM LANCES"));
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void naoDeveAproveitarNadaDeUmEncerramentoQueFalhouNoMeio() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(1);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Leilao tv = new CriadorDeLeilao().para("TV").constroi();
+			Leilao geladeira = new CriadorDeLeilao().para("Geladeira").constroi();
+			dao.salvaTodos(Arrays.asList(tv, geladeira));
+
+			try {
+				dao.encerraNotificando(Arrays.asList(tv, null));
+				fail();
+			} catch (NullPointerException e) {
+			}
+			dao.encerraNotificando(Collections.singletonList(geladeira));
+
+			assertEquals(1, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM NOTIFICACOES"));
+			assertEquals(1, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM LEILAO WHERE ENCERRADO = true"));
+			assertEquals(geladeira.getId(), dao.pendentes(0, 10, 5).get(0).getLeilao().getId());
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void deveTrazerOsLeiloesDasNotificacoesPendentesComOsLances() {
+		PoolDeConexoes banco = BancoEmMemoria.abre(1);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Usuario joao = BancoEmMemoria.usuario(banco, "Joo");
+			Usuario maria = BancoEmMemoria.usuario(banco, "Maria");
+			Leilao playstation = new CriadorDeLeilao().para("Playstation").lance(joao, 200).lance(maria, 300).constroi();
+			Leilao semLances = new CriadorDeLeilao().para("Geladeira").constroi();
+			dao.salvaTodos(Arrays.asList(playstation, semLances));
+			dao.encerraNotificando(Arrays.asList(playstation, semLances));
+
+			List<Notificacao> pendentes = dao.pendentes(0, 10, 5);
+
+			assertEquals(2, pendentes.size());
+			Leilao carregado = pendentes.get(0).getLeilao();
+			assertEquals(playstation.getId(), carregado.getId());
+			assertEquals("Playstation", carregado.getDescricao());
+			assertEquals(2, carregado.getLances().size());
+			assertEquals(maria, carregado.getLances().get(1).getUsuario());
+			assertEquals(semLances.getId(), pendentes.get(1).getLeilao().getId());
+			assertEquals(0, pendentes.get(1).getLeilao().getLances().size());
+		} finally {
+			banco.fecha();
+		}
+	}
+
+	@Test
+	public void deveAceitarANotificacaoGravadaPorOutroEncerramentoAoMesmoTempo() throws Exception {
+		final PoolDeConexoes banco = BancoEmMemoria.abre(2);
+		try {
+			LeilaoDao dao = new LeilaoDao(banco);
+			Leilao leilao = new CriadorDeLeilao().para("TV").constroi();
+			dao.salva(leilao);
+
+			// outro encerramento j inseriu a notificao, mas ainda no confirmou
+			final ConexaoComCache outra = banco.obtem();
+			outra.getConexao().setAutoCommit(false);
+			PreparedStatement insere = outra.getConexao().prepareStatement(
+					"INSERT INTO NOTIFICACOES (CHAVE, LEILAO_ID, TENTATIVAS, ENVIADA) VALUES (?, ?, 0, false)");
+			insere.setString(1, Notificacao.deEncerramento(leilao).getChave());
+			insere.setInt(2, leilao.getId());
+			insere.execute();
+			Thread confirma = new Thread(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(200);
+						outra.getConexao().commit();
+						outra.getConexao().setAutoCommit(true);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			confirma.start();
+
+			dao.encerraNotificando(Collections.singletonList(leilao));
+			confirma.join();
+			banco.devolve(outra);
+
+			assertEquals(1, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM NOTIFICACOES"));
+			assertEquals(1, BancoEmMemoria.conta(banco, "SELECT COUNT(*) FROM LEILAO WHERE ENCERRADO = true"));
+			assertEquals(1, dao.pendentes(0, 10, 5).size());
+		} finally {
+			banco.fecha();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Pagamento;
+import br.com.caelum.leilao.dominio.Usuario;
+import br.com.caelum.leilao.servico.Avaliador;
+import br.com.caelum.leilao.servico.GeradorDePagamento;
+
+public class PagamentoDaoTest {
+
+	private PoolDeConexoes pool;
+	private LeilaoDao leiloes;
+	private PagamentoDao pagamentos;
+	private Usuario joao;
+	private Usuario maria;
+
+	@Before
+	public void configuracaoInicial() {
+		pool = BancoEmMemoria.abre(2);
+		leiloes = new LeilaoDao(pool);
+		pagamentos = new PagamentoDao(pool);
+		joao = BancoEmMemoria.usuario(pool, "Joo");
+		maria = BancoEmMemoria.usuario(pool, "Maria");
+	}
+
+	@After
+	public void fecha() {
+		pool.fecha();
+	}
+
+	@Test
+	public void deveGravarOPagamentoEMarcarOLeilaoComoPago() {
+		Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(joao, 200).lance(maria, 300).encerrado().constroi();
+		leiloes.salva(leilao);
+
+		pagamentos.salva(new Pagamento(leilao, 300, LocalDate.of(2020, 4, 27)));
+
+		assertTrue(leilao.isPago());
+		assertTrue(leiloes.porId(leilao.getId()).isPago());
+		assertFalse(leiloes.percorreEncerradosSemPagamento().iterator().hasNext());
+		assertEquals(1, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM PAGAMENTO WHERE LEILAO_ID = " + leilao.getId()));
+	}
+
+	@Test
+	public void naoDeveGravarDoisPagamentosParaOMesmoLeilao() {
+		Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(joao, 200).encerrado().constroi();
+		leiloes.salva(leilao);
+
+		pagamentos.salvaTodos(Arrays.asList(new Pagamento(leilao, 200, LocalDate.of(2020, 4, 27)),
+				new Pagamento(leilao, 200, LocalDate.of(2020, 4, 27))));
+		pagamentos.salva(new Pagamento(leilao, 200, LocalDate.of(2020, 4, 28)));
+
+		assertEquals(1, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM PAGAMENTO"));
+	}
+
+	@Test
+	public void deveGerarApenasOsPagamentosQueFaltamAoRepetirAGeracao() {
+		Leilao pago = new CriadorDeLeilao().para("Playstation").lance(joao, 200).encerrado().constroi();
+		Leilao semPagamento = new CriadorDeLeilao().para("Geladeira").lance(maria, 900).encerrado().constroi();
+		Leilao corrente = new CriadorDeLeilao().para("TV").lance(joao, 100).constroi();
+		leiloes.salvaTodos(Arrays.asList(pago, semPagamento, corrente));
+		pagamentos.salva(new Pagamento(pago, 200, LocalDate.of(2020, 4, 27)));
+
+		GeradorDePagamento gerador = new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).apenasNaoPagos().emLotesDe(10);
+		gerador.gera();
+		gerador.gera();
+
+		assertEquals(2, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM PAGAMENTO"));
+		assertEquals(1, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM PAGAMENTO WHERE LEILAO_ID = " + semPagamento.getId()));
+	}
+
+	@Test
+	public void naoDeveMarcarComoPagoQuandoOLoteFalhaNoMeio() {
+		Leilao playstation = new CriadorDeLeilao().para("Playstation").lance(joao, 200).encerrado().constroi();
+		Leilao geladeira = new CriadorDeLeilao().para("Geladeira").lance(maria, 900).encerrado().constroi();
+		leiloes.salvaTodos(Arrays.asList(playstation, geladeira));
+
+		try {
+			pagamentos.salvaTodos(Arrays.asList(new Pagamento(playstation, 200, LocalDate.of(2020, 4, 27)),
+					new Pagamento(geladeira, 900, null)));
+			fail();
+		} catch (NullPointerException e) {
+		}
+
+		assertEquals(0, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM LEILAO WHERE PAGO = true"));
+		assertEquals(0, BancoEmMemoria.conta(pool, "SELECT COUNT(*) FROM PAGAMENTO"));
+		assertFalse(playstation.isPago());
+	}
+}
@@ -0,0 +1,120 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PoolDeConexoesTest {
+
+	/*
+	 * Em vez de um banco de verdade, o pool abre conexes do Mockito. Assim
+	 * conseguimos controlar quais conexes so vlidas e contar quantas foram
+	 * abertas.
+	 */
+	private static class PoolDeMocks extends PoolDeConexoes {
+
+		private List<Connection> abertas;
+
+		PoolDeMocks(int minimo, int maximo, long esperaMaxima) {
+			super("jdbc:falso", "", "", minimo, maximo, esperaMaxima);
+		}
+
+		protected Connection novaConexao() throws SQLException {
+			if(abertas == null) abertas = new ArrayList<Connection>();
+			Connection conexao = mock(Connection.class);
+			PreparedStatement ps = mock(PreparedStatement.class);
+			when(conexao.isValid(anyInt())).thenReturn(true);
+			when(conexao.prepareStatement(anyString())).thenReturn(ps);
+			abertas.add(conexao);
+			return conexao;
+		}
+	}
+
+	@Test
+	public void deveAbrirOMinimoDeConexoesLogoDeCara() {
+		PoolDeMocks pool = new PoolDeMocks(2, 5, 100);
+
+		assertEquals(2, pool.abertas.size());
+	}
+
+	@Test
+	public void deveReaproveitarConexaoDevolvida() {
+		PoolDeMocks pool = new PoolDeMocks(1, 5, 100);
+
+		ConexaoComCache primeira = pool.obtem();
+		pool.devolve(primeira);
+		ConexaoComCache segunda = pool.obtem();
+
+		assertSame(primeira, segunda);
+		assertEquals(1, pool.abertas.size());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void naoDeveEmprestarMaisQueOMaximo() {
+		PoolDeMocks pool = new PoolDeMocks(0, 2, 10);
+
+		pool.obtem();
+		pool.obtem();
+		pool.obtem();
+	}
+
+	@Test
+	public void deveTrocarConexaoQueDeixouDeSerValida() throws SQLException {
+		PoolDeMocks pool = new PoolDeMocks(1, 1, 100);
+		pool.validandoOciosasHaMaisDe(0);
+		Connection antiga = pool.abertas.get(0);
+		when(antiga.isValid(anyInt())).thenReturn(false);
+
+		ConexaoComCache conexao = pool.obtem();
+
+		assertNotSame(antiga, conexao.getConexao());
+		verify(antiga).close();
+	}
+
+	@Test
+	public void naoDeveValidarConexaoQueAcabouDeSerDevolvida() throws SQLException {
+		PoolDeMocks pool = new PoolDeMocks(1, 1, 100);
+		Connection conexao = pool.abertas.get(0);
+
+		pool.devolve(pool.obtem());
+		pool.devolve(pool.obtem());
+
+		verify(conexao, never()).isValid(anyInt());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void naoDeveAceitarAMesmaConexaoDevolvidaDuasVezes() {
+		PoolDeMocks pool = new PoolDeMocks(1, 2, 100);
+
+		ConexaoComCache conexao = pool.obtem();
+		pool.devolve(conexao);
+		pool.devolve(conexao);
+	}
+
+	@Test
+	public void deveReaproveitarStatementsJaPreparados() throws SQLException {
+		PoolDeMocks pool = new PoolDeMocks(1, 1, 100);
+		ConexaoComCache conexao = pool.obtem();
+
+		PreparedStatement primeiro = conexao.prepara("UPDATE LEILAO SET ENCERRADO=? WHERE ID = ?;");
+		PreparedStatement segundo = conexao.prepara("UPDATE LEILAO SET ENCERRADO=? WHERE ID = ?;");
+
+		assertSame(primeiro, segundo);
+		verify(conexao.getConexao(), times(1)).prepareStatement(anyString());
+	}
+}
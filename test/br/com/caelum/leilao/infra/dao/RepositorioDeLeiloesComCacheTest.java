@@ -0,0 +1,205 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Lance;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Usuario;
+
+public class RepositorioDeLeiloesComCacheTest {
+
+	private RepositorioDeLeiloes dao;
+	private Relogio relogio;
+	private ZonedDateTime agora;
+	private Leilao tv;
+	private Leilao geladeira;
+
+	@Before
+	public void configuracaoInicial() {
+		dao = mock(RepositorioDeLeiloes.class);
+		relogio = mock(Relogio.class);
+		agora = ZonedDateTime.of(2020, 5, 10, 12, 0, 0, 0, ZoneId.systemDefault());
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora));
+
+		tv = new CriadorDeLeilao().para("TV de plasma").lance(new Usuario(1, "Joo"), 100.0).constroi();
+		tv.setId(1);
+		geladeira = new CriadorDeLeilao().para("Geladeira").constroi();
+		geladeira.setId(2);
+		when(dao.porId(1)).thenReturn(tv);
+		when(dao.porId(2)).thenReturn(geladeira);
+	}
+
+	@Test
+	public void deveBuscarNoRepositorioSoNaPrimeiraVez() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio);
+
+		assertSame(tv, cache.porId(1));
+		assertSame(tv, cache.porId(1));
+
+		verify(dao, times(1)).porId(1);
+		assertEquals(1, cache.getAcertos());
+		assertEquals(1, cache.getFaltas());
+	}
+
+	@Test
+	public void deveDespejarOLeilaoUsadoHaMaisTempoPeloPeso() {
+		// a TV pesa 2 (um lance) e a geladeira pesa 1
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 2, 60000, relogio);
+
+		cache.porId(1);
+		cache.porId(2);
+		cache.porId(2);
+
+		assertEquals(1, cache.getDespejos());
+		assertEquals(1, cache.getPesoAtual());
+		assertEquals(1, cache.getAcertos());
+	}
+
+	@Test
+	public void deveBuscarDeNovoDepoisQueOLeilaoExpira() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio);
+
+		cache.porId(1);
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora.plusMinutes(2)));
+		cache.porId(1);
+
+		verify(dao, times(2)).porId(1);
+		assertEquals(2, cache.getFaltas());
+		assertEquals(1, cache.getDespejos());
+	}
+
+	@Test
+	public void deveAgruparAsAtualizacoesDoMesmoLeilao() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio)
+				.comEscritaAgrupada();
+
+		cache.atualiza(tv);
+		cache.atualiza(tv);
+		cache.atualiza(geladeira);
+		verify(dao, never()).atualiza(tv);
+
+		cache.descarrega();
+
+		verify(dao, times(1)).atualiza(tv);
+		verify(dao, times(1)).atualiza(geladeira);
+		assertSame(tv, cache.porId(1));
+		verify(dao, never()).porId(1);
+	}
+
+	@Test
+	public void deveDescarregarAsPendenciasEInvalidarAntesDeEncerrar() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio)
+				.comEscritaAgrupada();
+		cache.porId(1);
+		cache.atualiza(tv);
+
+		cache.encerraTodos(Arrays.asList(1));
+		cache.porId(1);
+
+		InOrder ordem = inOrder(dao);
+		ordem.verify(dao).atualiza(tv);
+		ordem.verify(dao).encerraTodos(Arrays.asList(1));
+		verify(dao, times(2)).porId(1);
+	}
+
+	@Test
+	public void deveGuardarAConsultaPercorridaAteOFim() {
+		when(dao.percorreEncerrados()).thenReturn(Arrays.asList(tv, geladeira));
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio);
+
+		for (Leilao leilao : cache.percorreEncerrados()) leilao.getId();
+		Iterator<Leilao> deNovo = cache.percorreEncerrados().iterator();
+
+		assertSame(tv, deNovo.next());
+		assertSame(geladeira, deNovo.next());
+		assertFalse(deNovo.hasNext());
+		verify(dao, times(1)).percorreEncerrados();
+		assertEquals(3, cache.getPesoAtual());
+	}
+
+	@Test
+	public void naoDeveGuardarConsultaInterrompidaNemAnteriorAUmaGravacao() {
+		when(dao.percorreEncerrados()).thenReturn(Arrays.asList(tv, geladeira));
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio);
+
+		cache.percorreEncerrados().iterator().next();
+		Iterator<Leilao> antesDaGravacao = cache.percorreEncerrados().iterator();
+		cache.atualiza(geladeira);
+		while (antesDaGravacao.hasNext()) antesDaGravacao.next();
+		cache.percorreEncerrados().iterator();
+
+		verify(dao, times(3)).percorreEncerrados();
+	}
+
+	@Test
+	public void deveRecalcularOPesoAoAtualizar() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio)
+				.comEscritaAgrupada();
+		cache.porId(2);
+		assertEquals(1, cache.getPesoAtual());
+
+		geladeira.propoe(new Lance(new Usuario(1, "Joo"), 100.0));
+		geladeira.propoe(new Lance(new Usuario(2, "Maria"), 200.0));
+		cache.atualiza(geladeira);
+		cache.descarrega();
+
+		assertEquals(3, cache.getPesoAtual());
+	}
+
+	@Test
+	public void deveManterPendentesAsAtualizacoesQueNaoForamGravadas() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio)
+				.comEscritaAgrupada();
+		cache.atualiza(tv);
+		cache.atualiza(geladeira);
+		doThrow(new RuntimeException()).doNothing().when(dao).atualiza(tv);
+
+		try {
+			cache.descarrega();
+			fail();
+		} catch (RuntimeException e) {
+		}
+		verify(dao, never()).atualiza(geladeira);
+
+		cache.descarrega();
+		cache.descarrega();
+
+		verify(dao, times(2)).atualiza(tv);
+		verify(dao, times(1)).atualiza(geladeira);
+	}
+
+	@Test
+	public void deveContarComoAcertoOLeilaoAchadoEntreAsPendencias() {
+		RepositorioDeLeiloesComCache cache = new RepositorioDeLeiloesComCache(dao, 10, 60000, relogio)
+				.comEscritaAgrupada();
+		cache.atualiza(tv);
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora.plusMinutes(2)));
+
+		assertSame(tv, cache.porId(1));
+
+		verify(dao, never()).porId(1);
+		assertEquals(1, cache.getAcertos());
+		assertEquals(0, cache.getFaltas());
+	}
+}
@@ -0,0 +1,64 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.GregorianCalendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReservaDaoTest {
+
+	private PoolDeConexoes pool;
+	private Relogio relogio;
+	private ZonedDateTime agora;
+	private ReservaDao reservas;
+
+	@Before
+	public void configuracaoInicial() {
+		pool = BancoEmMemoria.abre(1);
+		relogio = mock(Relogio.class);
+		agora = ZonedDateTime.of(2020, 5, 10, 12, 0, 0, 0, ZoneId.systemDefault());
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora));
+		reservas = new ReservaDao(pool, relogio);
+	}
+
+	@After
+	public void fecha() {
+		pool.fecha();
+	}
+
+	@Test
+	public void naoDeveEntregarAMesmaParticaoParaDoisDonos() {
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 4), "worker-a", 60000));
+		assertFalse(reservas.reserva("encerramento", new Particao(0, 4), "worker-b", 60000));
+		assertTrue(reservas.reserva("encerramento", new Particao(1, 4), "worker-b", 60000));
+		assertTrue(reservas.reserva("pagamento", new Particao(0, 4), "worker-b", 60000));
+	}
+
+	@Test
+	public void deveTratarComoReservasDiferentesAsParticoesDeTotaisDiferentes() {
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 4), "worker-a", 60000));
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 8), "worker-b", 60000));
+
+		reservas.libera("encerramento", new Particao(0, 8), "worker-a");
+		assertFalse(reservas.reserva("encerramento", new Particao(0, 8), "worker-a", 60000));
+
+		reservas.libera("encerramento", new Particao(0, 4), "worker-a");
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 4), "worker-b", 60000));
+	}
+
+	@Test
+	public void deveLiberarAParticaoQuandoAReservaVence() {
+		reservas.reserva("encerramento", new Particao(0, 4), "worker-a", 60000);
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora.plusMinutes(2)));
+
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 4), "worker-b", 60000));
+	}
+}
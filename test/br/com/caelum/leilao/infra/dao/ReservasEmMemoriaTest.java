@@ -0,0 +1,64 @@
+package br.com.caelum.leilao.infra.dao;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.GregorianCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReservasEmMemoriaTest {
+
+	private Relogio relogio;
+	private ZonedDateTime agora;
+	private ReservasEmMemoria reservas;
+	private Particao primeira;
+
+	@Before
+	public void configuracaoInicial() {
+		relogio = mock(Relogio.class);
+		agora = ZonedDateTime.of(2020, 5, 10, 12, 0, 0, 0, ZoneId.systemDefault());
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora));
+		reservas = new ReservasEmMemoria(relogio);
+		primeira = new Particao(0, 4);
+	}
+
+	@Test
+	public void naoDeveEntregarAMesmaParticaoParaDoisDonos() {
+		assertTrue(reservas.reserva("encerramento", primeira, "worker-a", 60000));
+		assertFalse(reservas.reserva("encerramento", primeira, "worker-b", 60000));
+		assertTrue(reservas.reserva("encerramento", new Particao(1, 4), "worker-b", 60000));
+		assertTrue(reservas.reserva("pagamento", primeira, "worker-b", 60000));
+	}
+
+	@Test
+	public void devePermitirQueODonoRenoveAReserva() {
+		reservas.reserva("encerramento", primeira, "worker-a", 60000);
+
+		assertTrue(reservas.reserva("encerramento", primeira, "worker-a", 60000));
+	}
+
+	@Test
+	public void deveLiberarAParticaoQuandoAReservaVence() {
+		reservas.reserva("encerramento", primeira, "worker-a", 60000);
+		when(relogio.hoje()).thenReturn(GregorianCalendar.from(agora.plusMinutes(2)));
+
+		assertTrue(reservas.reserva("encerramento", primeira, "worker-b", 60000));
+	}
+
+	@Test
+	public void deveLiberarAParticaoSoParaOProprioDono() {
+		reservas.reserva("encerramento", primeira, "worker-a", 60000);
+
+		reservas.libera("encerramento", primeira, "worker-b");
+		assertFalse(reservas.reserva("encerramento", primeira, "worker-b", 60000));
+
+		reservas.libera("encerramento", primeira, "worker-a");
+		assertTrue(reservas.reserva("encerramento", primeira, "worker-b", 60000));
+	}
+}
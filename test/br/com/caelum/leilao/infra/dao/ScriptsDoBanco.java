@@ -0,0 +1,51 @@
+package br.com.caelum.leilao.infra.dao;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/*
+ * Cria as tabelas com os scripts da pasta sql/, na ordem dos nomes. Usado
+ * pelos testes de banco (BancoEmMemoria) e pelos benchmarks, para que os dois
+ * montem sempre o mesmo esquema. Quem usa precisa rodar a partir da raiz do
+ * projeto.
+ */
+public class ScriptsDoBanco {
+
+	public static void executa(Connection conexao) throws SQLException {
+		Statement st = conexao.createStatement();
+		for (File script : scripts()) {
+			for (String comando : comandos(script)) st.execute(comando);
+		}
+		st.close();
+	}
+
+	private static File[] scripts() {
+		File[] scripts = new File("sql").listFiles(new FilenameFilter() {
+			public boolean accept(File pasta, String nome) {
+				return nome.endsWith(".sql");
+			}
+		});
+		if (scripts == null) throw new IllegalStateException("Pasta sql/ no encontrada; rode a partir da raiz do projeto");
+		Arrays.sort(scripts);
+		return scripts;
+	}
+
+	private static String[] comandos(File script) {
+		try {
+			StringBuilder sql = new StringBuilder();
+			for (String linha : Files.readAllLines(script.toPath(), StandardCharsets.ISO_8859_1)) {
+				if (!linha.trim().startsWith("--")) sql.append(linha).append('\n');
+			}
+			return sql.toString().trim().split(";\\s*");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
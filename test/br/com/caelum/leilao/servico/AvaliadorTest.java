@@ -5,6 +5,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -95,4 +96,109 @@ public class AvaliadorTest {
         
     }
      
+    @Test
+    public void deveDevolverOsMaioresLancesEmOrdemDecrescente() {
+        
+        Leilao leilao = new CriadorDeLeilao().para("Playstation 3 Novo")
+        		.lance(joao, 200.0)
+        		.lance(maria, 450.0)
+        		.lance(joao, 120.0)
+        		.lance(maria, 700.0)
+        		.lance(joao, 630.0)
+        		.lance(maria, 230.0)
+        		.constroi();
+         
+        leiloeiro.avalia(leilao);
+         
+        List<Lance> maiores = leiloeiro.getTresMaiores();
+        assertEquals(3, maiores.size());
+        assertEquals(700.0, maiores.get(0).getValor(), 0.00001);
+        assertEquals(630.0, maiores.get(1).getValor(), 0.00001);
+        assertEquals(450.0, maiores.get(2).getValor(), 0.00001);
+        assertEquals(700.0, leiloeiro.getMaiorLance(), 0.00001);
+        assertEquals(120.0, leiloeiro.getMenorLance(), 0.00001);
+    }
+     
+    @Test
+    public void deveGuardarApenasAQuantidadeDeMaioresPedida() {
+        
+        Leilao leilao = new CriadorDeLeilao().para("Playstation 3 Novo")
+        		.lance(joao, 100.0)
+        		.lance(maria, 300.0)
+        		.lance(jose, 200.0)
+        		.constroi();
+         
+        Avaliador avaliador = new Avaliador(2);
+        avaliador.avalia(leilao);
+         
+        List<Lance> maiores = avaliador.getTresMaiores();
+        assertEquals(2, maiores.size());
+        assertEquals(300.0, maiores.get(0).getValor(), 0.00001);
+        assertEquals(200.0, maiores.get(1).getValor(), 0.00001);
+    }
+     
+    @Test
+    public void deveUsarAsEstatisticasMantidasPeloLeilao() {
+        
+        Leilao leilao = new CriadorDeLeilao().para("Playstation 3 Novo")
+        		.comEstatisticas(3)
+        		.lance(joao, 100.0)
+        		.lance(maria, 400.0)
+        		.lance(joao, 300.0)
+        		.lance(maria, 200.0)
+        		.constroi();
+         
+        leiloeiro.avalia(leilao);
+         
+        assertEquals(400.0, leiloeiro.getMaiorLance(), 0.00001);
+        assertEquals(100.0, leiloeiro.getMenorLance(), 0.00001);
+        assertThat(leiloeiro.getTresMaiores(), equalTo(Arrays.asList(
+        		new Lance(maria, 400),
+        		new Lance(joao, 300),
+        		new Lance(maria, 200)
+        )));
+    }
+     
+    @Test
+    public void naoDeveCarregarOResultadoDeUmLeilaoParaOProximo() {
+        Leilao caro = new CriadorDeLeilao().para("Playstation 3 Novo")
+                .lance(joao, 1000.0)
+                .lance(maria, 2000.0)
+                .constroi();
+        Leilao barato = new CriadorDeLeilao().para("Xbox")
+                .lance(jose, 300.0)
+                .lance(maria, 500.0)
+                .constroi();
+
+        leiloeiro.avalia(caro);
+        Avaliacao avaliacao = leiloeiro.avalia(barato);
+
+        assertEquals(500.0, avaliacao.getMaiorLance(), 0.00001);
+        assertEquals(300.0, avaliacao.getMenorLance(), 0.00001);
+        assertEquals(500.0, leiloeiro.getMaiorLance(), 0.00001);
+    }
+
+    @Test
+    public void deveAvaliarOsLancesEmColunasComoALista() {
+        CriadorDeLeilao criador = new CriadorDeLeilao().para("Playstation 3 Novo")
+                .lance(joao, 300.0)
+                .lance(maria, 700.0)
+                .lance(jose, 300.0)
+                .lance(joao, 700.0)
+                .lance(maria, 100.0)
+                .lance(jose, 500.0);
+        Leilao emLista = criador.constroi();
+        Leilao emColunas = criador.constroi();
+        emColunas.guardaLancesEmColunas(true);
+
+        Avaliacao daLista = leiloeiro.avalia(emLista);
+        Avaliacao dasColunas = leiloeiro.avalia(emColunas);
+
+        assertEquals(700.0, dasColunas.getMaiorLance(), 0.00001);
+        assertEquals(100.0, dasColunas.getMenorLance(), 0.00001);
+        assertEquals(daLista.getMaiores(), dasColunas.getMaiores());
+        assertEquals(maria, dasColunas.getMaiores().get(0).getUsuario());
+        assertEquals(joao, dasColunas.getMaiores().get(1).getUsuario());
+    }
+
 }
@@ -0,0 +1,65 @@
+package br.com.caelum.leilao.servico;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CalendarioDeFeriadosTest {
+
+	@Test
+	public void deveManterUmDiaUtil() {
+		// 22/04/2020  uma Quarta-Feira
+		LocalDate quarta = LocalDate.of(2020, 4, 22);
+
+		LocalDate util = new CalendarioDeFeriados().proximoDiaUtil(quarta);
+
+		assertEquals(quarta, util);
+	}
+
+	@Test
+	public void devePularFimDeSemanaEFeriadosSeguidos() {
+		// 18/04/2020  um Sbado; 20 e 21 so feriados
+		LocalDate sabado = LocalDate.of(2020, 4, 18);
+		CalendarioDeFeriados calendario = new CalendarioDeFeriados(
+				Arrays.asList(LocalDate.of(2020, 4, 20), LocalDate.of(2020, 4, 21)));
+
+		LocalDate util = calendario.proximoDiaUtil(sabado);
+
+		assertEquals(LocalDate.of(2020, 4, 22), util);
+	}
+
+	@Test
+	public void devePassarParaOAnoSeguinte() {
+		// 31/12/2022  um Sbado; 01/01/2023  Domingo e feriado; 02/01 tambm  feriado
+		LocalDate sabado = LocalDate.of(2022, 12, 31);
+		CalendarioDeFeriados calendario = new CalendarioDeFeriados(
+				Arrays.asList(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2)));
+
+		LocalDate util = calendario.proximoDiaUtil(sabado);
+
+		assertEquals(LocalDate.of(2023, 1, 3), util);
+	}
+
+	@Test
+	public void deveLerOsFeriadosDeUmArquivo() throws IOException {
+		File arquivo = File.createTempFile("feriados", ".txt");
+		arquivo.deleteOnExit();
+		FileWriter escritor = new FileWriter(arquivo);
+		try {
+			escritor.write("# feriados nacionais\n2020-04-21\n\n2020-05-01\n");
+		} finally {
+			escritor.close();
+		}
+
+		CalendarioDeFeriados calendario = CalendarioDeFeriados.doArquivo(arquivo.getPath());
+
+		assertEquals(LocalDate.of(2020, 4, 22), calendario.proximoDiaUtil(LocalDate.of(2020, 4, 21)));
+		assertEquals(LocalDate.of(2020, 5, 4), calendario.proximoDiaUtil(LocalDate.of(2020, 5, 1)));
+	}
+}
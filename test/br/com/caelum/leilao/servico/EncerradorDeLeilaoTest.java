@@ -11,20 +11,32 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyCollectionOf;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 
 import br.com.caelum.leilao.builder.CriadorDeLeilao;
 import br.com.caelum.leilao.dominio.Leilao;
 import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.LeilaoDaoFalso;
+import br.com.caelum.leilao.infra.dao.Particao;
+import br.com.caelum.leilao.infra.dao.Relogio;
 import br.com.caelum.leilao.infra.dao.RepositorioDeLeiloes;
+import br.com.caelum.leilao.infra.dao.ReservasDeParticoes;
+import br.com.caelum.leilao.infra.dao.ReservasEmMemoria;
 
 /**
  * IMPORTANTE:  impossvel mockar mtodos estticos!
@@ -61,14 +73,14 @@ public class EncerradorDeLeilaoTest {
 
 		/*
 		 * Ensinando o mock a reagir da maneira que esperamos. Toda vez que DAO chamar
-		 * .correntes(), ele retornar nosso List<Leilao> leiloesAntigos
+		 * .correntesIniciadosAntesDe(), ele retornar nosso List<Leilao> leiloesAntigos
 		 */
-		when(dao.correntes()).thenReturn(leiloesAntigos);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(leiloesAntigos);
 
 		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro);
 
 		/*
-		 * Esse mtodo, internamente, executar a funo dao.correntes(). Como estamos
+		 * Esse mtodo, internamente, executar a funo dao.correntesIniciadosAntesDe(). Como estamos
 		 * usando o Mock, sempre retornar nosso List<Leilao> leiloesAntigos
 		 */
 		encerrador.encerra();
@@ -93,7 +105,7 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(ontem).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1, leilao2));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
 
 		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro);
 		encerrador.encerra();
@@ -113,7 +125,7 @@ public class EncerradorDeLeilaoTest {
 	public void naoDeveEncerrarLeiloesCasoNaoHajaNenhum() {
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(new ArrayList<Leilao>());
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(new ArrayList<Leilao>());
 
 		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro);
 		encerrador.encerra();
@@ -130,14 +142,14 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").naData(antiga).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1));
 
 		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro);
 		encerrador.encerra();
 
 		/*
 		 * Verifica se o mtodo atualiza()  chamado dentro da chamada do mtodo
-		 * correntes(). Alm disso, verificamos se o mtodo atualiza  executado somente
+		 * correntesIniciadosAntesDe(). Alm disso, verificamos se o mtodo atualiza  executado somente
 		 * 1 vez.
 		 * 
 		 * Atravs do verify(), conseguimos, ento, testar que mtodos so invocados,
@@ -170,7 +182,7 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").naData(antiga).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1));
 
 		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro);
 		encerrador.encerra();
@@ -193,7 +205,7 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(antiga).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1, leilao2));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
 
 		/*
 		 * Deve lanar exceo do tipo RuntimeException ao executar o atualiza() com
@@ -221,7 +233,7 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(antiga).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1, leilao2));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
 
 		/*
 		 * Mockito lanar exceo quando carteiro.envia () para leilao 1 for chamado.
@@ -244,7 +256,7 @@ public class EncerradorDeLeilaoTest {
 		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(antiga).constroi();
 
 		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
-		when(dao.correntes()).thenReturn(Arrays.asList(leilao1, leilao2));
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
 		
 		/*
 		 * Mockito lanar exceo para todas as chamadas de dao.atualiza().
@@ -258,4 +270,188 @@ public class EncerradorDeLeilaoTest {
 		// Verificando que o mtodo carteiro.envia() nunca  executada para qualquer leilo
 		verify(carteiro, never()).envia(any(Leilao.class));
 	}
+
+	@Test
+	public void deveEncerrarEmParaleloIsolandoAsFalhas() throws InterruptedException {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for (int i = 0; i < 20; i++) {
+			leiloes.add(new CriadorDeLeilao().para("Leilo " + i).naData(antiga).constroi());
+		}
+
+		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(leiloes);
+		doThrow(new RuntimeException()).when(dao).atualiza(leiloes.get(3));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).emParalelo(executor, 2);
+		encerrador.encerra();
+		executor.shutdown();
+
+		assertEquals(20, encerrador.getTotalEncerrados());
+		for (Leilao leilao : leiloes) {
+			assertTrue(leilao.isEncerrado());
+			verify(dao).atualiza(leilao);
+		}
+		verify(carteiro, times(19)).envia(any(Leilao.class));
+		verify(carteiro, never()).envia(leiloes.get(3));
+	}
+
+	@Test
+	public void deveUsarORelogioParaDecidirQuemComecouHaUmaSemana() {
+		Calendar agora = Calendar.getInstance();
+		agora.set(2020, Calendar.MAY, 10, 12, 0, 0);
+		Relogio relogio = mock(Relogio.class);
+		when(relogio.hoje()).thenReturn(agora);
+
+		Calendar seisDiasAntesMaisCedo = Calendar.getInstance();
+		seisDiasAntesMaisCedo.set(2020, Calendar.MAY, 4, 11, 0, 0);
+		Calendar seisDiasAntesMaisTarde = Calendar.getInstance();
+		seisDiasAntesMaisTarde.set(2020, Calendar.MAY, 4, 13, 0, 0);
+		Calendar muitoAntiga = Calendar.getInstance();
+		muitoAntiga.set(1970, Calendar.JANUARY, 1);
+
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").naData(seisDiasAntesMaisCedo).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(seisDiasAntesMaisTarde).constroi();
+		Leilao leilao3 = new CriadorDeLeilao().para("Fogo").naData(muitoAntiga).constroi();
+
+		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2, leilao3));
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro, relogio);
+		encerrador.encerra();
+
+		assertTrue(leilao1.isEncerrado());
+		assertFalse(leilao2.isEncerrado());
+		assertTrue(leilao3.isEncerrado());
+		assertEquals(2, encerrador.getTotalEncerrados());
+
+		/*
+		 * S devem ser buscados no repositrio os leiles que comearam at 6 dias
+		 * antes de "agora".
+		 */
+		ArgumentCaptor<LocalDate> limite = ArgumentCaptor.forClass(LocalDate.class);
+		verify(dao).correntesIniciadosAntesDe(limite.capture());
+		assertEquals(LocalDate.of(2020, 5, 4), limite.getValue());
+	}
+
+	@Test
+	public void deveEncerrarEmLotesComUmaUnicaAtualizacaoPorLote() {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for (int i = 0; i < 5; i++) {
+			Leilao leilao = new CriadorDeLeilao().para("Leilo " + i).naData(antiga).constroi();
+			leilao.setId(i + 1);
+			leiloes.add(leilao);
+		}
+
+		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(leiloes);
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).emLotesDe(2);
+		encerrador.encerra();
+
+		assertEquals(5, encerrador.getTotalEncerrados());
+		verify(dao).encerraTodos(Arrays.asList(1, 2));
+		verify(dao).encerraTodos(Arrays.asList(3, 4));
+		verify(dao).encerraTodos(Arrays.asList(5));
+		verify(dao, never()).atualiza(any(Leilao.class));
+		verify(carteiro, times(5)).envia(any(Leilao.class));
+	}
+
+	@Test
+	public void deveGravarUmAUmQuandoOLoteFalha() {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").naData(antiga).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(antiga).constroi();
+
+		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
+		doThrow(new RuntimeException()).when(dao).encerraTodos(anyCollectionOf(Integer.class));
+		doThrow(new RuntimeException()).when(dao).atualizaEncerramento(leilao1);
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).emLotesDe(10);
+		encerrador.encerra();
+
+		verify(dao).atualizaEncerramento(leilao2);
+		verify(carteiro).envia(leilao2);
+		verify(carteiro, never()).envia(leilao1);
+	}
+
+	@Test
+	public void deveRegistrarNaCaixaDeSaidaEmVezDeEnviarEmail() {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").naData(antiga).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").naData(antiga).constroi();
+
+		RepositorioDeLeiloes dao = mock(RepositorioDeLeiloes.class);
+		when(dao.correntesIniciadosAntesDe(any(LocalDate.class))).thenReturn(Arrays.asList(leilao1, leilao2));
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).comCaixaDeSaida().emLotesDe(10);
+		encerrador.encerra();
+
+		assertEquals(2, encerrador.getTotalEncerrados());
+		verify(dao).encerraNotificando(Arrays.asList(leilao1, leilao2));
+		verify(dao, never()).atualiza(any(Leilao.class));
+		verify(carteiro, never()).envia(any(Leilao.class));
+	}
+
+	@Test
+	public void deveEncerrarApenasAsParticoesQueConseguiuReservar() {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for (int i = 0; i < 4; i++) {
+			leiloes.add(new CriadorDeLeilao().para("Leilo " + i).naData(antiga).constroi());
+		}
+		dao.salvaTodos(leiloes);
+
+		// outro encerrador j est trabalhando nos ids mpares
+		ReservasEmMemoria reservas = new ReservasEmMemoria();
+		reservas.reserva("encerramento", new Particao(1, 2), "outro", 60000);
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).emParticoes(reservas, 2, "este", 60000);
+		encerrador.encerra();
+
+		assertEquals(2, encerrador.getTotalEncerrados());
+		for (Leilao leilao : leiloes) {
+			assertEquals(leilao.getId() % 2 == 0, leilao.isEncerrado());
+		}
+		assertTrue(reservas.reserva("encerramento", new Particao(0, 2), "mais um", 60000));
+	}
+
+	@Test
+	public void deveRenovarAReservaACadaLoteEPararQuandoAPerde() {
+		Calendar antiga = Calendar.getInstance();
+		antiga.set(1999, 1, 20);
+
+		LeilaoDaoFalso dao = new LeilaoDaoFalso();
+		List<Leilao> leiloes = new ArrayList<Leilao>();
+		for (int i = 0; i < 3; i++) {
+			leiloes.add(new CriadorDeLeilao().para("Leilo " + i).naData(antiga).constroi());
+		}
+		dao.salvaTodos(leiloes);
+
+		// a reserva  obtida e renovada uma vez; na segunda renovao, j  de outro
+		ReservasDeParticoes reservas = mock(ReservasDeParticoes.class);
+		when(reservas.reserva(anyString(), any(Particao.class), anyString(), anyLong())).thenReturn(true, true, false);
+
+		EncerradorDeLeilao encerrador = new EncerradorDeLeilao(dao, carteiro).emLotesDe(1)
+				.emParticoes(reservas, 1, "este", 60000);
+		encerrador.encerra();
+
+		assertEquals(1, encerrador.getTotalEncerrados());
+		verify(reservas, times(3)).reserva("encerramento", new Particao(0, 1), "este", 60000);
+		verify(reservas).libera("encerramento", new Particao(0, 1), "este");
+	}
 }
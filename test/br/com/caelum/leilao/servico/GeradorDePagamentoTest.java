@@ -1,12 +1,23 @@
 package br.com.caelum.leilao.servico;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,9 +27,12 @@ import br.com.caelum.leilao.builder.CriadorDeLeilao;
 import br.com.caelum.leilao.dominio.Leilao;
 import br.com.caelum.leilao.dominio.Pagamento;
 import br.com.caelum.leilao.dominio.Usuario;
+import br.com.caelum.leilao.infra.dao.Particao;
 import br.com.caelum.leilao.infra.dao.Relogio;
 import br.com.caelum.leilao.infra.dao.RepositorioDeLeiloes;
 import br.com.caelum.leilao.infra.dao.RepositorioDePagamentos;
+import br.com.caelum.leilao.infra.dao.ReservasDeParticoes;
+import br.com.caelum.leilao.infra.dao.ReservasEmMemoria;
 
 public class GeradorDePagamentoTest {
 
@@ -56,7 +70,7 @@ public class GeradorDePagamentoTest {
 		Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0)
 				.lance(new Usuario("Maria Pereira"), 2500.0).constroi();
 
-		when(leiloes.encerrados()).thenReturn(Arrays.asList(leilao));
+		when(leiloes.percorreEncerrados()).thenReturn(Arrays.asList(leilao));
 		// when(avaliador.getMaiorLance()).thenReturn(2500.0);
 
 		// GeradorDePagamento gerador = new GeradorDePagamento(leiloes, pagamentos,
@@ -116,7 +130,7 @@ public class GeradorDePagamentoTest {
 		Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0)
 				.lance(new Usuario("Maria Pereira"), 2500.0).constroi();
 
-		when(leiloes.encerrados()).thenReturn(Arrays.asList(leilao));
+		when(leiloes.percorreEncerrados()).thenReturn(Arrays.asList(leilao));
 
 		GeradorDePagamento gerador = new GeradorDePagamento(leiloes, pagamentos, new Avaliador(), relogio);
 		gerador.gera();
@@ -133,4 +147,133 @@ public class GeradorDePagamentoTest {
 		assertEquals(27, pagamentoGerado.getData().get(Calendar.DAY_OF_MONTH));
 	}
 
+	@Test
+	public void deveGravarOsPagamentosEmLotes() {
+
+		Leilao leilao1 = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Xbox").lance(new Usuario("Maria Pereira"), 1500.0).constroi();
+		Leilao leilao3 = new CriadorDeLeilao().para("Wii").lance(new Usuario("Maria Pereira"), 900.0).constroi();
+
+		when(leiloes.percorreEncerrados()).thenReturn(Arrays.asList(leilao1, leilao2, leilao3));
+
+		GeradorDePagamento gerador = new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).emLotesDe(2);
+		gerador.gera();
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Pagamento>> argumento = ArgumentCaptor.forClass((Class<List<Pagamento>>) (Class<?>) List.class);
+		verify(pagamentos, times(2)).salvaTodos(argumento.capture());
+		verify(pagamentos, never()).salva(any(Pagamento.class));
+
+		assertEquals(2, argumento.getAllValues().get(0).size());
+		assertEquals(1, argumento.getAllValues().get(1).size());
+	}
+
+	@Test
+	public void deveGerarEmParaleloOsMesmosPagamentosDaExecucaoSequencial() {
+
+		List<Leilao> encerrados = new ArrayList<Leilao>();
+		for (int i = 0; i < 50; i++) {
+			encerrados.add(new CriadorDeLeilao().para("Leilo " + i)
+					.lance(new Usuario("Jos da Silva"), 100.0 + i)
+					.lance(new Usuario("Maria Pereira"), 1000.0 - i).constroi());
+		}
+		when(leiloes.percorreEncerrados()).thenReturn(encerrados);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).emParalelo(executor, 8).gera();
+		} finally {
+			executor.shutdown();
+		}
+
+		ArgumentCaptor<Pagamento> argumento = ArgumentCaptor.forClass(Pagamento.class);
+		verify(pagamentos, times(50)).salva(argumento.capture());
+
+		for (int i = 0; i < 50; i++) {
+			assertEquals(1000.0 - i, argumento.getAllValues().get(i).getValor(), 0.00001);
+		}
+	}
+
+	@Test
+	public void deveGerarPagamentoApenasParaLeiloesAindaNaoPagos() {
+
+		Leilao leilao = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0).constroi();
+
+		when(leiloes.percorreEncerradosSemPagamento()).thenReturn(Arrays.asList(leilao));
+
+		new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).apenasNaoPagos().gera();
+
+		ArgumentCaptor<Pagamento> argumento = ArgumentCaptor.forClass(Pagamento.class);
+		verify(pagamentos).salva(argumento.capture());
+		verify(leiloes, never()).percorreEncerrados();
+
+		assertSame(leilao, argumento.getValue().getLeilao());
+	}
+
+	@Test
+	public void deveEmpurrarOsPagamentosParaDepoisDoFeriado() {
+
+		// 21/04/2020  uma Tera-Feira e feriado
+		Calendar feriado = Calendar.getInstance();
+		feriado.set(2020, Calendar.APRIL, 21);
+		when(relogio.hoje()).thenReturn(feriado);
+
+		Leilao leilao1 = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Xbox").lance(new Usuario("Maria Pereira"), 1500.0).constroi();
+		when(leiloes.percorreEncerrados()).thenReturn(Arrays.asList(leilao1, leilao2));
+
+		new GeradorDePagamento(leiloes, pagamentos, new Avaliador(), relogio)
+				.comCalendario(new CalendarioDeFeriados(Arrays.asList(LocalDate.of(2020, 4, 21)))).gera();
+
+		ArgumentCaptor<Pagamento> argumento = ArgumentCaptor.forClass(Pagamento.class);
+		verify(pagamentos, times(2)).salva(argumento.capture());
+		verify(relogio, times(1)).hoje();
+
+		for (Pagamento pagamento : argumento.getAllValues()) {
+			assertEquals(LocalDate.of(2020, 4, 22), pagamento.getDia());
+		}
+	}
+
+	@Test
+	public void deveGerarPagamentosParticaoPorParticao() {
+
+		Leilao par = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0).constroi();
+		Leilao impar = new CriadorDeLeilao().para("Xbox").lance(new Usuario("Maria Pereira"), 1500.0).constroi();
+		when(leiloes.percorreEncerradosSemPagamento(new Particao(0, 2))).thenReturn(Arrays.asList(par));
+		when(leiloes.percorreEncerradosSemPagamento(new Particao(1, 2))).thenReturn(Arrays.asList(impar));
+
+		ReservasEmMemoria reservas = new ReservasEmMemoria();
+		reservas.reserva("pagamento", new Particao(1, 2), "outro", 60000);
+
+		new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).apenasNaoPagos()
+				.emParticoes(reservas, 2, "este", 60000).gera();
+
+		ArgumentCaptor<Pagamento> argumento = ArgumentCaptor.forClass(Pagamento.class);
+		verify(pagamentos).salva(argumento.capture());
+		assertSame(par, argumento.getValue().getLeilao());
+		verify(leiloes, never()).percorreEncerradosSemPagamento();
+	}
+
+	@Test
+	public void naoDeveGravarOLoteDepoisDePerderAReserva() {
+
+		Leilao leilao1 = new CriadorDeLeilao().para("Playstation").lance(new Usuario("Jos da Silva"), 2000.0).constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Xbox").lance(new Usuario("Maria Pereira"), 1500.0).constroi();
+		Leilao leilao3 = new CriadorDeLeilao().para("Wii").lance(new Usuario("Maria Pereira"), 900.0).constroi();
+		when(leiloes.percorreEncerrados(new Particao(0, 1))).thenReturn(Arrays.asList(leilao1, leilao2, leilao3));
+
+		// a reserva  obtida e renovada para o primeiro lote; no segundo, j  de outro
+		ReservasDeParticoes reservas = mock(ReservasDeParticoes.class);
+		when(reservas.reserva(anyString(), any(Particao.class), anyString(), anyLong())).thenReturn(true, true, false);
+
+		new GeradorDePagamento(leiloes, pagamentos, new Avaliador()).emLotesDe(2)
+				.emParticoes(reservas, 1, "este", 60000).gera();
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Pagamento>> argumento = ArgumentCaptor.forClass((Class<List<Pagamento>>) (Class<?>) List.class);
+		verify(pagamentos, times(1)).salvaTodos(argumento.capture());
+		assertEquals(2, argumento.getValue().size());
+		verify(reservas).libera("pagamento", new Particao(0, 1), "este");
+	}
+
 }
@@ -0,0 +1,103 @@
+package br.com.caelum.leilao.servico;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.leilao.builder.CriadorDeLeilao;
+import br.com.caelum.leilao.dominio.Leilao;
+import br.com.caelum.leilao.dominio.Notificacao;
+import br.com.caelum.leilao.infra.dao.EnviadorDeEmail;
+import br.com.caelum.leilao.infra.dao.RepositorioDeNotificacoes;
+
+public class RetransmissorDeNotificacoesTest {
+
+	private RepositorioDeNotificacoes notificacoes;
+	private EnviadorDeEmail carteiro;
+
+	@Before
+	public void configuracaoInicial() {
+		notificacoes = mock(RepositorioDeNotificacoes.class);
+		carteiro = mock(EnviadorDeEmail.class);
+	}
+
+	@Test
+	public void deveEnviarEMarcarAsNotificacoesPendentes() {
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").constroi();
+		Notificacao notificacao1 = new Notificacao(1, "leilao-encerrado-1", leilao1, 0);
+		Notificacao notificacao2 = new Notificacao(2, "leilao-encerrado-2", leilao2, 0);
+
+		when(notificacoes.pendentes(0, 10, 3)).thenReturn(Arrays.asList(notificacao1, notificacao2));
+
+		RetransmissorDeNotificacoes retransmissor = new RetransmissorDeNotificacoes(notificacoes, carteiro, 10, 3);
+
+		assertEquals(2, retransmissor.retransmite());
+		verify(carteiro).envia(leilao1);
+		verify(carteiro).envia(leilao2);
+		verify(notificacoes).marcaEnviadas(Arrays.asList(notificacao1, notificacao2));
+	}
+
+	@Test
+	public void deveRegistrarFalhaEManterANotificacaoNaCaixa() {
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").constroi();
+		Notificacao notificacao1 = new Notificacao(1, "leilao-encerrado-1", leilao1, 0);
+		Notificacao notificacao2 = new Notificacao(2, "leilao-encerrado-2", leilao2, 0);
+
+		when(notificacoes.pendentes(0, 10, 3)).thenReturn(Arrays.asList(notificacao1, notificacao2));
+		doThrow(new RuntimeException()).when(carteiro).envia(leilao1);
+
+		RetransmissorDeNotificacoes retransmissor = new RetransmissorDeNotificacoes(notificacoes, carteiro, 10, 3);
+
+		assertEquals(1, retransmissor.retransmite());
+		verify(notificacoes).registraFalha(notificacao1);
+		verify(notificacoes).marcaEnviadas(Collections.singletonList(notificacao2));
+	}
+
+	@Test
+	public void naoDeveInsistirQuandoNenhumEnvioDaCerto() {
+		Leilao leilao = new CriadorDeLeilao().para("TV de plasma").constroi();
+		Notificacao notificacao = new Notificacao(1, "leilao-encerrado-1", leilao, 0);
+
+		when(notificacoes.pendentes(0, 1, 3)).thenReturn(Arrays.asList(notificacao));
+		doThrow(new RuntimeException()).when(carteiro).envia(leilao);
+
+		RetransmissorDeNotificacoes retransmissor = new RetransmissorDeNotificacoes(notificacoes, carteiro, 1, 3);
+
+		assertEquals(0, retransmissor.retransmite());
+		verify(notificacoes).registraFalha(notificacao);
+		verify(notificacoes, never()).marcaEnviadas(anyCollectionOf(Notificacao.class));
+	}
+
+	@Test
+	public void deveTentarAsNotificacoesSeguintesQuandoUmLoteInteiroFalha() {
+		Leilao leilao1 = new CriadorDeLeilao().para("TV de plasma").constroi();
+		Leilao leilao2 = new CriadorDeLeilao().para("Geladeira").constroi();
+		Leilao leilao3 = new CriadorDeLeilao().para("Playstation").constroi();
+		Notificacao notificacao1 = new Notificacao(1, "leilao-encerrado-1", leilao1, 0);
+		Notificacao notificacao2 = new Notificacao(2, "leilao-encerrado-2", leilao2, 0);
+		Notificacao notificacao3 = new Notificacao(3, "leilao-encerrado-3", leilao3, 0);
+
+		when(notificacoes.pendentes(0, 2, 3)).thenReturn(Arrays.asList(notificacao1, notificacao2));
+		when(notificacoes.pendentes(2, 2, 3)).thenReturn(Arrays.asList(notificacao3));
+		doThrow(new RuntimeException()).when(carteiro).envia(leilao1);
+		doThrow(new RuntimeException()).when(carteiro).envia(leilao2);
+
+		RetransmissorDeNotificacoes retransmissor = new RetransmissorDeNotificacoes(notificacoes, carteiro, 2, 3);
+
+		assertEquals(1, retransmissor.retransmite());
+		verify(carteiro).envia(leilao3);
+		verify(notificacoes).marcaEnviadas(Collections.singletonList(notificacao3));
+	}
+}